@@ -0,0 +1,161 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2020 Crown Copyright (Health Education England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.core;
+
+import com.github.javafaker.Faker;
+import java.lang.reflect.Field;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.springframework.util.ReflectionUtils;
+import uk.nhs.hee.tis.revalidation.core.dto.DoctorsForDbDto;
+import uk.nhs.hee.tis.revalidation.core.dto.TraineeCoreDto;
+import uk.nhs.hee.tis.revalidation.core.entity.DoctorsForDb;
+import uk.nhs.hee.tis.revalidation.core.entity.RecommendationStatus;
+import uk.nhs.hee.tis.revalidation.core.entity.UnderNotice;
+
+/**
+ * Repeatable generated data for the benchmarks.
+ */
+public final class BenchmarkData {
+
+  private static final String[] NOTICES = {"Yes", "No", "On Hold"};
+  private static final String[] GRADES = {"ST1", "ST2", "ST3", "CT1", "CT2", "F2"};
+
+  private final Faker faker;
+  private final Random random;
+
+  public BenchmarkData(long seed) {
+    random = new Random(seed);
+    faker = new Faker(Locale.UK, random);
+  }
+
+  /**
+   * Generate GMC sync messages for the given number of doctors.
+   *
+   * @param count the number of doctors
+   * @return the generated messages
+   */
+  public List<DoctorsForDbDto> doctorDtos(int count) {
+    List<DoctorsForDbDto> dtos = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      dtos.add(DoctorsForDbDto.builder()
+          .gmcReferenceNumber(gmcNumber(i))
+          .doctorFirstName(faker.name().firstName())
+          .doctorLastName(faker.name().lastName())
+          .submissionDate(date())
+          .dateAdded(date())
+          .underNotice(NOTICES[random.nextInt(NOTICES.length)])
+          .sanction("No")
+          .designatedBodyCode("1-AIIDR8")
+          .build());
+    }
+    return dtos;
+  }
+
+  /**
+   * Generate stored doctors for the given number of doctors.
+   *
+   * @param count the number of doctors
+   * @return the generated doctors
+   */
+  public List<DoctorsForDb> doctors(int count) {
+    RecommendationStatus[] statuses = RecommendationStatus.values();
+    List<DoctorsForDb> doctors = new ArrayList<>(count);
+    for (DoctorsForDbDto dto : doctorDtos(count)) {
+      DoctorsForDb doctor = DoctorsForDb.convert(dto);
+      doctor.setDoctorStatus(statuses[random.nextInt(statuses.length)]);
+      doctor.setLastUpdatedDate(date());
+      doctors.add(doctor);
+    }
+    return doctors;
+  }
+
+  /**
+   * Generate TCS core information for each of the doctors.
+   *
+   * @param doctors the doctors to generate core information for
+   * @return the core information keyed by GMC number
+   */
+  public Map<String, TraineeCoreDto> traineeCore(List<DoctorsForDb> doctors) {
+    Map<String, TraineeCoreDto> traineeCore = new HashMap<>();
+    for (DoctorsForDb doctor : doctors) {
+      traineeCore.put(doctor.getGmcReferenceNumber(), TraineeCoreDto.builder()
+          .gmcId(doctor.getGmcReferenceNumber())
+          .curriculumEndDate(date())
+          .programmeName(faker.educator().course())
+          .programmeMembershipType("SUBSTANTIVE")
+          .currentGrade(GRADES[random.nextInt(GRADES.length)])
+          .build());
+    }
+    return traineeCore;
+  }
+
+  /**
+   * Generate under notice values as sent by GMC, in mixed case and including unknown values.
+   *
+   * @param count the number of values
+   * @return the generated values
+   */
+  public String[] underNoticeValues(int count) {
+    UnderNotice[] notices = UnderNotice.values();
+    String[] values = new String[count];
+    for (int i = 0; i < count; i++) {
+      int choice = random.nextInt(notices.length + 1);
+      values[i] = choice == notices.length ? "Unknown"
+          : random.nextBoolean() ? notices[choice].value()
+              : notices[choice].value().toUpperCase(Locale.UK);
+    }
+    return values;
+  }
+
+  /**
+   * Set a private field, for the fields normally injected by Spring.
+   *
+   * @param target the object to set the field on
+   * @param name   the name of the field
+   * @param value  the value to set
+   */
+  public static void setField(Object target, String name, Object value) {
+    Field field = ReflectionUtils.findField(target.getClass(), name);
+    if (field == null) {
+      throw new IllegalArgumentException("No field " + name + " on " + target.getClass());
+    }
+    ReflectionUtils.makeAccessible(field);
+    ReflectionUtils.setField(field, target, value);
+  }
+
+  private String gmcNumber(int index) {
+    return String.valueOf(1_000_000 + index);
+  }
+
+  private LocalDate date() {
+    return faker.date().past(3650, TimeUnit.DAYS).toInstant()
+        .atZone(ZoneId.of("Europe/London")).toLocalDate();
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2020 Crown Copyright (Health Education England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.core.dto;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import uk.nhs.hee.tis.revalidation.core.BenchmarkData;
+import uk.nhs.hee.tis.revalidation.core.entity.DoctorsForDb;
+
+/**
+ * Measures the Jackson serialisation of a doctors summary page, with the object mapper
+ * configured as Spring configures it for the controllers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TraineeSummaryDtoBenchmark {
+
+  @Param({"20", "100", "500"})
+  private int pageSize;
+
+  private ObjectWriter writer;
+  private TraineeSummaryDto summary;
+
+  /**
+   * Build a summary page of generated doctors.
+   */
+  @Setup
+  public void setUp() {
+    BenchmarkData data = new BenchmarkData(42L);
+    List<DoctorsForDb> doctors = data.doctors(pageSize);
+    Map<String, TraineeCoreDto> traineeCore = data.traineeCore(doctors);
+
+    List<TraineeInfoDto> traineeInfo = new ArrayList<>(pageSize);
+    for (DoctorsForDb doctor : doctors) {
+      TraineeCoreDto core = traineeCore.get(doctor.getGmcReferenceNumber());
+      traineeInfo.add(TraineeInfoDto.builder()
+          .gmcReferenceNumber(doctor.getGmcReferenceNumber())
+          .doctorFirstName(doctor.getDoctorFirstName())
+          .doctorLastName(doctor.getDoctorLastName())
+          .submissionDate(doctor.getSubmissionDate())
+          .dateAdded(doctor.getDateAdded())
+          .underNotice(doctor.getUnderNotice().name())
+          .sanction(doctor.getSanction())
+          .doctorStatus(doctor.getDoctorStatus().name())
+          .lastUpdatedDate(doctor.getLastUpdatedDate())
+          .curriculumEndDate(core.getCurriculumEndDate())
+          .programmeName(core.getProgrammeName())
+          .programmeMembershipType(core.getProgrammeMembershipType())
+          .currentGrade(core.getCurrentGrade())
+          .build());
+    }
+
+    summary = TraineeSummaryDto.builder()
+        .countTotal(100_000L)
+        .countUnderNotice(10_000L)
+        .totalPages(100_000L / pageSize)
+        .totalResults(100_000L)
+        .traineeInfo(traineeInfo)
+        .build();
+    writer = Jackson2ObjectMapperBuilder.json().build().writerFor(TraineeSummaryDto.class);
+  }
+
+  @Benchmark
+  public byte[] serialise() throws JsonProcessingException {
+    return writer.writeValueAsBytes(summary);
+  }
+}
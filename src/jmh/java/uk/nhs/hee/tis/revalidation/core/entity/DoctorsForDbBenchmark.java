@@ -0,0 +1,76 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2020 Crown Copyright (Health Education England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.core.entity;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import uk.nhs.hee.tis.revalidation.core.BenchmarkData;
+import uk.nhs.hee.tis.revalidation.core.dto.DoctorsForDbDto;
+
+/**
+ * Measures the per-doctor conversions applied to each GMC sync message.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DoctorsForDbBenchmark {
+
+  private static final int BATCH_SIZE = 500;
+
+  private List<DoctorsForDbDto> dtos;
+  private String[] underNoticeValues;
+
+  /**
+   * Generate the GMC sync messages and under notice values.
+   */
+  @Setup
+  public void setUp() {
+    BenchmarkData data = new BenchmarkData(42L);
+    dtos = data.doctorDtos(BATCH_SIZE);
+    underNoticeValues = data.underNoticeValues(BATCH_SIZE);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH_SIZE)
+  public void convert(Blackhole blackhole) {
+    for (DoctorsForDbDto dto : dtos) {
+      blackhole.consume(DoctorsForDb.convert(dto));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH_SIZE)
+  public void underNoticeFromString(Blackhole blackhole) {
+    for (String value : underNoticeValues) {
+      blackhole.consume(UnderNotice.fromString(value));
+    }
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2020 Crown Copyright (Health Education England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.core.mapper;
+
+import com.github.javafaker.Faker;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AttributeType;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.UserType;
+import uk.nhs.hee.tis.revalidation.core.BenchmarkData;
+import uk.nhs.hee.tis.revalidation.core.dto.AdminDto;
+import uk.nhs.hee.tis.revalidation.core.mapper.util.AdminUtil;
+
+/**
+ * Compares the single-pass admin mapping against the previous stream per attribute mapping.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AdminMapperBenchmark {
+
+  @Param({"100", "1000", "10000"})
+  private int userCount;
+
+  private List<UserType> users;
+  private AdminMapper mapper;
+
+  /**
+   * Generate the Cognito users and create the mapper.
+   */
+  @Setup
+  public void setUp() {
+    Faker faker = new Faker(Locale.UK, new Random(42L));
+    users = new ArrayList<>(userCount);
+    for (int i = 0; i < userCount; i++) {
+      users.add(UserType.builder()
+          .username(faker.internet().uuid())
+          .attributes(
+              attribute("sub", faker.internet().uuid()),
+              attribute("email_verified", "true"),
+              attribute("given_name", faker.name().firstName()),
+              attribute("family_name", faker.name().lastName()),
+              attribute("email", faker.internet().emailAddress()))
+          .build());
+    }
+
+    mapper = new AdminMapperImpl();
+    BenchmarkData.setField(mapper, "adminUtil", new AdminUtil());
+  }
+
+  @Benchmark
+  public List<AdminDto> singlePass() {
+    return mapper.toDtos(users);
+  }
+
+  @Benchmark
+  public List<AdminDto> streamPerAttribute() {
+    return users.stream()
+        .map(AdminMapperBenchmark::streamPerAttributeDto)
+        .collect(Collectors.toList());
+  }
+
+  private static AdminDto streamPerAttributeDto(UserType userType) {
+    AdminDto dto = new AdminDto();
+    dto.setFullName(
+        attributeValue(userType, "given_name") + " " + attributeValue(userType, "family_name"));
+    dto.setEmail(attributeValue(userType, "email"));
+    dto.setUsername(userType.username());
+    return dto;
+  }
+
+  private static String attributeValue(UserType userType, String name) {
+    return userType.attributes().stream()
+        .filter(attr -> name.equals(attr.name()))
+        .map(AttributeType::value)
+        .findFirst()
+        .orElse("");
+  }
+
+  private static AttributeType attribute(String name, String value) {
+    return AttributeType.builder().name(name).value(value).build();
+  }
+}
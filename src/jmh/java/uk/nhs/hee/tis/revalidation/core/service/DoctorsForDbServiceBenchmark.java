@@ -0,0 +1,145 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2020 Crown Copyright (Health Education England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.core.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import uk.nhs.hee.tis.revalidation.core.BenchmarkData;
+import uk.nhs.hee.tis.revalidation.core.dto.TraineeCoreDto;
+import uk.nhs.hee.tis.revalidation.core.dto.TraineeRequestDto;
+import uk.nhs.hee.tis.revalidation.core.dto.TraineeSummaryDto;
+import uk.nhs.hee.tis.revalidation.core.entity.DoctorsForDb;
+import uk.nhs.hee.tis.revalidation.core.repository.DoctorsForDbRepository;
+
+/**
+ * Measures the in-process work of building a doctors summary page: converting each doctor,
+ * merging the TCS information and assembling the summary. The repository, TCS and counts are
+ * stand-ins returning prepared data, so Mongo and network time are excluded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DoctorsForDbServiceBenchmark {
+
+  private static final long TOTAL_DOCTORS = 100_000L;
+
+  @Param({"20", "100", "500"})
+  private int pageSize;
+
+  private DoctorsForDbService service;
+  private TraineeRequestDto request;
+
+  /**
+   * Create the service with stand-ins for its dependencies.
+   */
+  @Setup
+  public void setUp() {
+    BenchmarkData data = new BenchmarkData(42L);
+    List<DoctorsForDb> doctors = data.doctors(pageSize);
+    Map<String, TraineeCoreDto> traineeCore = data.traineeCore(doctors);
+    Page<DoctorsForDb> page =
+        new PageImpl<>(doctors, PageRequest.of(0, pageSize), TOTAL_DOCTORS);
+
+    DoctorsForDbRepository repository = (DoctorsForDbRepository) Proxy.newProxyInstance(
+        DoctorsForDbRepository.class.getClassLoader(),
+        new Class<?>[]{DoctorsForDbRepository.class},
+        (proxy, method, args) -> {
+          if ("findPageWithTotal".equals(method.getName())) {
+            return page;
+          }
+          throw new UnsupportedOperationException(method.getName());
+        });
+
+    TraineeCoreService traineeCoreService = new TraineeCoreService() {
+      @Override
+      public Map<String, TraineeCoreDto> getTraineeInformationFromCore(List<String> gmcIds) {
+        return traineeCore;
+      }
+
+      @Override
+      public CompletableFuture<Map<String, TraineeCoreDto>> getTraineeInformationFromCoreAsync(
+          List<String> gmcIds) {
+        return CompletableFuture.completedFuture(traineeCore);
+      }
+
+      @Override
+      public boolean isDegraded() {
+        return false;
+      }
+    };
+
+    DoctorCountService doctorCountService = new DoctorCountService() {
+      @Override
+      public long getCountAll() {
+        return TOTAL_DOCTORS;
+      }
+
+      @Override
+      public long getCountUnderNotice() {
+        return TOTAL_DOCTORS / 10;
+      }
+    };
+
+    Executor directExecutor = Runnable::run;
+    service = new DoctorsForDbService();
+    BenchmarkData.setField(service, "pageSize", pageSize);
+    BenchmarkData.setField(service, "queryTimeout", 60_000L);
+    BenchmarkData.setField(service, "tcsTimeout", 60_000L);
+    BenchmarkData.setField(service, "doctorsSummaryExecutor", directExecutor);
+    BenchmarkData.setField(service, "doctorsRepository", repository);
+    BenchmarkData.setField(service, "traineeCoreService", traineeCoreService);
+    BenchmarkData.setField(service, "doctorCountService", doctorCountService);
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    BenchmarkData.setField(service, "meterRegistry", meterRegistry);
+    //A zero TTL means every invocation measures the full listing rather than a cache hit
+    BenchmarkData.setField(service, "doctorsSummaryCache",
+        new DoctorsSummaryCache(meterRegistry, 0L, 1L));
+
+    request = TraineeRequestDto.builder()
+        .sortColumn("submissionDate")
+        .sortOrder("desc")
+        .pageNumber(0)
+        .searchQuery("")
+        .build();
+  }
+
+  @Benchmark
+  public TraineeSummaryDto getAllTraineeDoctorDetails() {
+    return service.getAllTraineeDoctorDetails(request);
+  }
+}
@@ -29,9 +29,10 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
 import org.springframework.oxm.jaxb.Jaxb2Marshaller;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.ws.client.core.WebServiceTemplate;
 
+@EnableScheduling
 @SpringBootApplication
 public class RevalidationCoreApplication {
 
@@ -47,11 +48,6 @@ public class RevalidationCoreApplication {
     return mapper;
   }
 
-  @Bean
-  public RestTemplate restTemplate() {
-    return new RestTemplate();
-  }
-
   @Bean
   public Jaxb2Marshaller marshaller() {
     final Jaxb2Marshaller marshaller = new Jaxb2Marshaller();
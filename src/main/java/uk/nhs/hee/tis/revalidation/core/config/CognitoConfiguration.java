@@ -21,15 +21,32 @@
 
 package uk.nhs.hee.tis.revalidation.core.config;
 
+import java.net.URI;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.StringUtils;
 import software.amazon.awssdk.services.cognitoidentityprovider.CognitoIdentityProviderClient;
 
 @Configuration
 public class CognitoConfiguration {
 
+  @Value("${app.cognito.endpoint:}")
+  private String endpoint;
+
+  /**
+   * Create the Cognito client, pointed at the configured endpoint when one is set.
+   *
+   * @return the Cognito client
+   */
   @Bean
   public CognitoIdentityProviderClient getAwsIdentityProvider() {
-    return CognitoIdentityProviderClient.create();
+    if (!StringUtils.hasText(endpoint)) {
+      return CognitoIdentityProviderClient.create();
+    }
+
+    return CognitoIdentityProviderClient.builder()
+        .endpointOverride(URI.create(endpoint))
+        .build();
   }
 }
@@ -0,0 +1,56 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2020 Crown Copyright (Health Education England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.core.config;
+
+import java.util.concurrent.ThreadPoolExecutor.AbortPolicy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class ExecutorConfig {
+
+  public static final String DOCTORS_SUMMARY_EXECUTOR = "doctorsSummaryExecutor";
+
+  @Value("${app.reval.summary.executor.poolSize}")
+  private int poolSize;
+
+  @Value("${app.reval.summary.executor.queueCapacity}")
+  private int queueCapacity;
+
+  /**
+   * Bounded executor for the stages of the doctors summary. When it is saturated a stage is
+   * rejected rather than run on the calling thread, which may be an event loop, and the request
+   * fails with 503 (Service Unavailable).
+   */
+  @Bean(DOCTORS_SUMMARY_EXECUTOR)
+  public ThreadPoolTaskExecutor doctorsSummaryExecutor() {
+    final var executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(poolSize);
+    executor.setMaxPoolSize(poolSize);
+    executor.setQueueCapacity(queueCapacity);
+    executor.setThreadNamePrefix("doctors-summary-");
+    executor.setRejectedExecutionHandler(new AbortPolicy());
+    return executor;
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2020 Crown Copyright (Health Education England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.core.config;
+
+import io.netty.channel.ChannelOption;
+import java.time.Duration;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+@Configuration
+public class HttpClientConfig {
+
+  public static final String TCS_POOL = "tcs";
+
+  @Value("${app.reval.tcs.http.maxTotal}")
+  private int maxTotal;
+
+  @Value("${app.reval.tcs.http.maxPerRoute}")
+  private int maxPerRoute;
+
+  @Value("${app.reval.tcs.http.maxPending}")
+  private int maxPending;
+
+  @Value("${app.reval.tcs.http.connectTimeout}")
+  private int connectTimeout;
+
+  @Value("${app.reval.tcs.http.readTimeout}")
+  private long readTimeout;
+
+  @Value("${app.reval.tcs.http.requestTimeout}")
+  private long requestTimeout;
+
+  @Value("${app.reval.tcs.http.idleTimeout}")
+  private long idleTimeout;
+
+  @Value("${app.reval.tcs.http.keepAlive}")
+  private long keepAlive;
+
+  /**
+   * Pooled connections to TCS. The pool is per host, and TCS is the only host, so at most the
+   * smaller of the total and per route limits are open. At most the maximum pending requests wait
+   * for a connection, each for no longer than the request timeout, so a slow TCS is not able to
+   * build an unbounded backlog. A connection is kept alive for reuse while idle for no longer
+   * than the keep-alive and idle timeouts, and is closed by a background check every idle
+   * timeout. The pool statistics are published under the pool name.
+   */
+  @Bean(destroyMethod = "dispose")
+  public ConnectionProvider tcsConnectionProvider() {
+    return ConnectionProvider.builder(TCS_POOL)
+        .maxConnections(Math.min(maxTotal, maxPerRoute))
+        .pendingAcquireMaxCount(maxPending)
+        .pendingAcquireTimeout(Duration.ofMillis(requestTimeout))
+        .maxIdleTime(Duration.ofMillis(Math.min(keepAlive, idleTimeout)))
+        .evictInBackground(Duration.ofMillis(idleTimeout))
+        .metrics(true)
+        .build();
+  }
+
+  /**
+   * Non-blocking client used to call TCS. Every request is bounded by the connect and read
+   * timeouts, and waits for a pooled connection for no longer than the request timeout.
+   *
+   * @param webClientBuilder      the builder configured with the application's codecs and metrics
+   * @param tcsConnectionProvider the pool of connections to TCS
+   */
+  @Bean
+  public WebClient tcsWebClient(final WebClient.Builder webClientBuilder,
+      final ConnectionProvider tcsConnectionProvider) {
+    final var httpClient = HttpClient.create(tcsConnectionProvider)
+        .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeout)
+        .responseTimeout(Duration.ofMillis(readTimeout));
+
+    return webClientBuilder
+        .clientConnector(new ReactorClientHttpConnector(httpClient))
+        .build();
+  }
+}
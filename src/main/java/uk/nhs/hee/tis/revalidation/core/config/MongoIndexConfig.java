@@ -0,0 +1,221 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2020 Crown Copyright (Health Education England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.core.config;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.index.TextIndexDefinition;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import uk.nhs.hee.tis.revalidation.core.entity.DoctorsForDb;
+import uk.nhs.hee.tis.revalidation.core.repository.SearchMode;
+
+/**
+ * Creates the indexes the doctors queries rely on, as automatic index creation is disabled.
+ */
+@Slf4j
+@Configuration
+public class MongoIndexConfig {
+
+  private static final String DEFAULT_ID_INDEX = "_id_";
+  private static final String FIRST_NAME = "doctorFirstName";
+  private static final String LAST_NAME = "doctorLastName";
+  private static final int BACKFILL_BATCH_SIZE = 1000;
+
+  private final MongoTemplate mongoTemplate;
+
+  @Value("${app.reval.search.mode}")
+  private SearchMode searchMode;
+
+  @Value("${app.validation.sort.fields}")
+  private List<String> sortFields;
+
+  @Value("${app.reval.index.usageReportInterval}")
+  private long usageReportInterval;
+
+  MongoIndexConfig(final MongoTemplate mongoTemplate) {
+    this.mongoTemplate = mongoTemplate;
+  }
+
+  /**
+   * Backfill the normalised search fields, ensure the doctors indexes exist and report any
+   * indexes which are missing.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void initialiseIndexes() {
+    try {
+      backfillNormalisedFields();
+      final var expectedIndexes = ensureDoctorsIndexes();
+      reportDoctorsIndexes(expectedIndexes);
+    } catch (final RuntimeException e) {
+      log.error("Failed to initialise doctorsForDb indexes", e);
+    }
+  }
+
+  /**
+   * Set the normalised search fields on doctors stored before they existed. The values are
+   * normalised here rather than in the database so they match those written by the GMC sync.
+   */
+  private void backfillNormalisedFields() {
+    final var query = query(where("normalisedGmcNumber").exists(false));
+    query.fields().include(FIRST_NAME).include(LAST_NAME);
+    query.cursorBatchSize(BACKFILL_BATCH_SIZE);
+
+    var bulkOperations = mongoTemplate.bulkOps(BulkMode.UNORDERED, DoctorsForDb.class);
+    var pending = 0;
+    var backfilled = 0;
+    try (var documents = mongoTemplate.stream(query, Document.class,
+        mongoTemplate.getCollectionName(DoctorsForDb.class))) {
+      while (documents.hasNext()) {
+        final var document = documents.next();
+        final var gmcNumber = document.getString("_id");
+        bulkOperations.updateOne(query(where("_id").is(gmcNumber)), new Update()
+            .set("normalisedFirstName", DoctorsForDb.normalise(document.getString(FIRST_NAME)))
+            .set("normalisedLastName", DoctorsForDb.normalise(document.getString(LAST_NAME)))
+            .set("normalisedGmcNumber", DoctorsForDb.normalise(gmcNumber)));
+        if (++pending == BACKFILL_BATCH_SIZE) {
+          bulkOperations.execute();
+          backfilled += pending;
+          pending = 0;
+          bulkOperations = mongoTemplate.bulkOps(BulkMode.UNORDERED, DoctorsForDb.class);
+        }
+      }
+    }
+
+    if (pending > 0) {
+      bulkOperations.execute();
+      backfilled += pending;
+    }
+    log.info("Backfilled normalised search fields for {} doctors", backfilled);
+  }
+
+  private Set<String> ensureDoctorsIndexes() {
+    final List<IndexDefinition> definitions = new ArrayList<>();
+    final var resolver =
+        IndexResolver.create(mongoTemplate.getConverter().getMappingContext());
+    resolver.resolveIndexFor(DoctorsForDb.class).forEach(definitions::add);
+
+    //Sort indexes for each allowed sort column, with and without the under notice filter. The
+    //GMC number is included as it breaks ties in cursor paging.
+    for (final String sortField : sortFields) {
+      definitions.add(new Index()
+          .named("doctorsForDb_" + sortField)
+          .on(sortField, Direction.ASC)
+          .on("_id", Direction.ASC));
+      definitions.add(new Index()
+          .named("doctorsForDb_underNotice_" + sortField)
+          .on("underNotice", Direction.ASC)
+          .on(sortField, Direction.ASC)
+          .on("_id", Direction.ASC));
+    }
+
+    if (searchMode == SearchMode.TEXT) {
+      definitions.add(TextIndexDefinition.builder()
+          .named("doctorsForDb_search_text")
+          .onField(FIRST_NAME)
+          .onField(LAST_NAME)
+          .onField("normalisedGmcNumber")
+          .build());
+    }
+
+    final var indexOps = mongoTemplate.indexOps(DoctorsForDb.class);
+    definitions.forEach(indexOps::ensureIndex);
+    return definitions.stream()
+        .map(definition -> definition.getIndexOptions().getString("name"))
+        .collect(Collectors.toSet());
+  }
+
+  private void reportDoctorsIndexes(final Set<String> expectedIndexes) {
+    final var existingIndexes = mongoTemplate.indexOps(DoctorsForDb.class).getIndexInfo().stream()
+        .map(IndexInfo::getName)
+        .collect(Collectors.toSet());
+    final var missingIndexes = expectedIndexes.stream()
+        .filter(name -> !existingIndexes.contains(name))
+        .sorted()
+        .collect(Collectors.toList());
+    if (missingIndexes.isEmpty()) {
+      log.info("Verified {} doctorsForDb indexes", expectedIndexes.size());
+    } else {
+      log.error("Missing doctorsForDb indexes: {}", missingIndexes);
+    }
+
+    final var unmanagedIndexes = existingIndexes.stream()
+        .filter(name -> !DEFAULT_ID_INDEX.equals(name) && !expectedIndexes.contains(name))
+        .sorted()
+        .collect(Collectors.toList());
+    if (!unmanagedIndexes.isEmpty()) {
+      log.warn("doctorsForDb indexes not created by this service: {}", unmanagedIndexes);
+    }
+  }
+
+  /**
+   * Report doctors indexes with no recorded use. Only indexes whose usage has been tracked for at
+   * least one report interval are included, so indexes just created or tracked since a recent
+   * server restart are not reported.
+   */
+  @Scheduled(initialDelayString = "${app.reval.index.usageReportInterval}",
+      fixedDelayString = "${app.reval.index.usageReportInterval}")
+  public void reportUnusedIndexes() {
+    final var trackedBefore = new Date(System.currentTimeMillis() - usageReportInterval);
+    final var unusedIndexes = new ArrayList<String>();
+    try {
+      mongoTemplate.getCollection(mongoTemplate.getCollectionName(DoctorsForDb.class))
+          .aggregate(List.of(new Document("$indexStats", new Document())))
+          .forEach(stats -> {
+            final var accesses = stats.get("accesses", Document.class);
+            final var name = stats.getString("name");
+            if (!DEFAULT_ID_INDEX.equals(name) && accesses != null
+                && accesses.get("ops", Number.class).longValue() == 0
+                && accesses.getDate("since").before(trackedBefore)) {
+              unusedIndexes.add(name);
+            }
+          });
+    } catch (final RuntimeException e) {
+      log.warn("Failed to read doctorsForDb index usage", e);
+      return;
+    }
+
+    if (!unusedIndexes.isEmpty()) {
+      log.warn("doctorsForDb indexes with no recorded use since at least {}: {}", trackedBefore,
+          unusedIndexes);
+    }
+  }
+}
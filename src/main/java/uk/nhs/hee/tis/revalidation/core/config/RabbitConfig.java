@@ -22,22 +22,38 @@
 package uk.nhs.hee.tis.revalidation.core.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Map;
 import org.springframework.amqp.core.AcknowledgeMode;
 import org.springframework.amqp.core.Binding;
 import org.springframework.amqp.core.BindingBuilder;
 import org.springframework.amqp.core.DirectExchange;
 import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.config.RetryInterceptorBuilder;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.retry.MessageBatchRecoverer;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConversionException;
 import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.retry.RetryCallback;
+import org.springframework.retry.RetryContext;
+import org.springframework.retry.backoff.ExponentialBackOffPolicy;
+import org.springframework.retry.interceptor.RetryOperationsInterceptor;
+import org.springframework.retry.listener.RetryListenerSupport;
+import org.springframework.retry.policy.SimpleRetryPolicy;
+import org.springframework.retry.support.RetryTemplate;
 
 @Configuration
 public class RabbitConfig {
 
+  public static final String GMC_SYNC_CONTAINER_FACTORY = "gmcSyncContainerFactory";
+  public static final String GMC_SYNC_LISTENER_ID = "gmcSyncListener";
+
   @Value("${app.rabbit.queue}")
   private String queueName;
 
@@ -47,6 +63,42 @@ public class RabbitConfig {
   @Value("${app.rabbit.routingkey}")
   private String routingKey;
 
+  @Value("${app.error.exchange}")
+  private String errorExchange;
+
+  @Value("${app.error.queue}")
+  private String errorQueueName;
+
+  @Value("${app.error.routingKey}")
+  private String errorRoutingKey;
+
+  @Value("${app.error.limit.retries}")
+  private boolean limitRetries;
+
+  @Value("${app.error.retry.maxAttempts}")
+  private int retryMaxAttempts;
+
+  @Value("${app.error.retry.initialInterval}")
+  private long retryInitialInterval;
+
+  @Value("${app.error.retry.multiplier}")
+  private double retryMultiplier;
+
+  @Value("${app.error.retry.maxInterval}")
+  private long retryMaxInterval;
+
+  @Value("${app.rabbit.batch.size}")
+  private int batchSize;
+
+  @Value("${app.rabbit.batch.receiveTimeout}")
+  private long receiveTimeout;
+
+  @Value("${app.rabbit.prefetch}")
+  private int prefetch;
+
+  @Value("${app.rabbit.consumers.min}")
+  private int minConsumers;
+
   @Bean
   public Queue queue() {
     return new Queue(queueName, false);
@@ -58,8 +110,23 @@ public class RabbitConfig {
   }
 
   @Bean
-  public Binding binding(final Queue queue, final DirectExchange exchange) {
-    return BindingBuilder.bind(queue).to(exchange).with(routingKey);
+  public Binding binding() {
+    return BindingBuilder.bind(queue()).to(exchange()).with(routingKey);
+  }
+
+  @Bean
+  public Queue errorQueue() {
+    return new Queue(errorQueueName, true);
+  }
+
+  @Bean
+  public DirectExchange errorExchange() {
+    return new DirectExchange(errorExchange);
+  }
+
+  @Bean
+  public Binding errorBinding() {
+    return BindingBuilder.bind(errorQueue()).to(errorExchange()).with(errorRoutingKey);
   }
 
   @Bean
@@ -75,4 +142,69 @@ public class RabbitConfig {
     rabbitTemplate.containerAckMode(AcknowledgeMode.AUTO);
     return rabbitTemplate;
   }
+
+  /**
+   * Listener container factory for the GMC sync queue, delivering messages to the listener in
+   * batches which are acknowledged once the listener returns. A batch is delivered early if no
+   * further message arrives within the receive timeout.
+   *
+   * <p>When retries are limited a failed batch is retried with exponential backoff, then handed
+   * to the recoverer instead of being requeued. Only a recoverer failure requeues the batch.
+   *
+   * @param connectionFactory connection factory for the container
+   * @param batchRecoverer    recoverer for batches which have exhausted their retries
+   * @param meterRegistry     registry to publish the retry count to
+   */
+  @Bean(GMC_SYNC_CONTAINER_FACTORY)
+  public SimpleRabbitListenerContainerFactory gmcSyncContainerFactory(
+      final ConnectionFactory connectionFactory, final MessageBatchRecoverer batchRecoverer,
+      final MeterRegistry meterRegistry) {
+    final var factory = new SimpleRabbitListenerContainerFactory();
+    factory.setConnectionFactory(connectionFactory);
+    factory.setMessageConverter(jsonMessageConverter());
+    factory.setAcknowledgeMode(AcknowledgeMode.AUTO);
+    factory.setBatchListener(true);
+    factory.setConsumerBatchEnabled(true);
+    factory.setBatchSize(batchSize);
+    factory.setReceiveTimeout(receiveTimeout);
+    factory.setPrefetchCount(Math.max(prefetch, batchSize));
+    factory.setConcurrentConsumers(minConsumers);
+
+    if (limitRetries) {
+      factory.setAdviceChain(gmcSyncRetryInterceptor(batchRecoverer, meterRegistry));
+      factory.setDefaultRequeueRejected(false);
+    }
+    return factory;
+  }
+
+  private RetryOperationsInterceptor gmcSyncRetryInterceptor(
+      final MessageBatchRecoverer batchRecoverer, final MeterRegistry meterRegistry) {
+    //Messages which can not be converted will never succeed, so go straight to the recoverer
+    final var retryPolicy = new SimpleRetryPolicy(retryMaxAttempts,
+        Map.of(MessageConversionException.class, false), true, true);
+
+    final var backOffPolicy = new ExponentialBackOffPolicy();
+    backOffPolicy.setInitialInterval(retryInitialInterval);
+    backOffPolicy.setMultiplier(retryMultiplier);
+    backOffPolicy.setMaxInterval(retryMaxInterval);
+
+    final var retryCounter = meterRegistry.counter("reval.gmcsync.retries");
+    final var retryTemplate = new RetryTemplate();
+    retryTemplate.setRetryPolicy(retryPolicy);
+    retryTemplate.setBackOffPolicy(backOffPolicy);
+    retryTemplate.registerListener(new RetryListenerSupport() {
+      @Override
+      public <T, E extends Throwable> void onError(final RetryContext context,
+          final RetryCallback<T, E> callback, final Throwable throwable) {
+        if (retryPolicy.canRetry(context)) {
+          retryCounter.increment();
+        }
+      }
+    });
+
+    return RetryInterceptorBuilder.stateless()
+        .retryOperations(retryTemplate)
+        .recoverer(batchRecoverer)
+        .build();
+  }
 }
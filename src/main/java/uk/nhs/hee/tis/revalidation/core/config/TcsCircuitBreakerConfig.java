@@ -0,0 +1,110 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2020 Crown Copyright (Health Education England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.core.config;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig.SlidingWindowType;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpStatus.Series;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+@Slf4j
+@Configuration
+public class TcsCircuitBreakerConfig {
+
+  public static final String TCS_CIRCUIT_BREAKER = "tcs";
+
+  @Value("${app.reval.tcs.circuitBreaker.failureRateThreshold}")
+  private float failureRateThreshold;
+
+  @Value("${app.reval.tcs.circuitBreaker.slowCallRateThreshold}")
+  private float slowCallRateThreshold;
+
+  @Value("${app.reval.tcs.circuitBreaker.slowCallDuration}")
+  private long slowCallDuration;
+
+  @Value("${app.reval.tcs.circuitBreaker.window}")
+  private int window;
+
+  @Value("${app.reval.tcs.circuitBreaker.minimumCalls}")
+  private int minimumCalls;
+
+  @Value("${app.reval.tcs.circuitBreaker.openDuration}")
+  private long openDuration;
+
+  @Value("${app.reval.tcs.circuitBreaker.halfOpenCalls}")
+  private int halfOpenCalls;
+
+  /**
+   * Registry of the circuit breakers, with their state and call statistics published.
+   *
+   * @param meterRegistry registry to publish the circuit breaker statistics to
+   */
+  @Bean
+  public CircuitBreakerRegistry circuitBreakerRegistry(final MeterRegistry meterRegistry) {
+    final var registry = CircuitBreakerRegistry.ofDefaults();
+    TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(registry).bindTo(meterRegistry);
+    return registry;
+  }
+
+  /**
+   * Circuit breaker for the calls to TCS. It opens when the failure or slow call rate over the
+   * rolling window, in seconds, passes its threshold. After the open duration a limited number of
+   * probe calls are let through to decide whether to close it again. Client errors are not
+   * counted as failures.
+   *
+   * @param circuitBreakerRegistry the registry to create the circuit breaker in
+   */
+  @Bean
+  public CircuitBreaker tcsCircuitBreaker(final CircuitBreakerRegistry circuitBreakerRegistry) {
+    final var config = CircuitBreakerConfig.custom()
+        .slidingWindowType(SlidingWindowType.TIME_BASED)
+        .slidingWindowSize(window)
+        .minimumNumberOfCalls(minimumCalls)
+        .failureRateThreshold(failureRateThreshold)
+        .slowCallRateThreshold(slowCallRateThreshold)
+        .slowCallDurationThreshold(Duration.ofMillis(slowCallDuration))
+        .waitDurationInOpenState(Duration.ofMillis(openDuration))
+        .permittedNumberOfCallsInHalfOpenState(halfOpenCalls)
+        .ignoreException(TcsCircuitBreakerConfig::isClientError)
+        .build();
+
+    final var circuitBreaker =
+        circuitBreakerRegistry.circuitBreaker(TCS_CIRCUIT_BREAKER, config);
+    circuitBreaker.getEventPublisher().onStateTransition(event ->
+        log.warn("TCS circuit breaker changed state: {}", event.getStateTransition()));
+    return circuitBreaker;
+  }
+
+  private static boolean isClientError(final Throwable exception) {
+    return exception instanceof WebClientResponseException && Series.resolve(
+        ((WebClientResponseException) exception).getRawStatusCode()) == Series.CLIENT_ERROR;
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2020 Crown Copyright (Health Education England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.core.config;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.util.Optional;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import uk.nhs.hee.tis.revalidation.core.dto.TraineeCoreDto;
+
+@Configuration
+public class TraineeCoreCacheConfig {
+
+  public static final String TRAINEE_CORE_CACHE = "traineeCore";
+
+  @Value("${app.reval.tcs.cache.ttl}")
+  private long ttl;
+
+  @Value("${app.reval.tcs.cache.negativeTtl}")
+  private long negativeTtl;
+
+  @Value("${app.reval.tcs.cache.maxSize}")
+  private long maxSize;
+
+  /**
+   * Cache of TCS core information by GMC id, an empty value records that TCS has no data.
+   *
+   * @param meterRegistry registry to publish the cache statistics to
+   */
+  @Bean
+  public Cache<String, Optional<TraineeCoreDto>> traineeCoreCache(
+      final MeterRegistry meterRegistry) {
+    final Cache<String, Optional<TraineeCoreDto>> cache = Caffeine.newBuilder()
+        .maximumSize(maxSize)
+        .expireAfter(new TraineeCoreExpiry(MILLISECONDS.toNanos(ttl),
+            MILLISECONDS.toNanos(negativeTtl)))
+        .recordStats()
+        .build();
+    return CaffeineCacheMetrics.monitor(meterRegistry, cache, TRAINEE_CORE_CACHE);
+  }
+
+  /**
+   * Expires known trainees after the TTL and unknown trainees after the negative TTL.
+   */
+  static class TraineeCoreExpiry implements Expiry<String, Optional<TraineeCoreDto>> {
+
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+
+    TraineeCoreExpiry(final long ttlNanos, final long negativeTtlNanos) {
+      this.ttlNanos = ttlNanos;
+      this.negativeTtlNanos = negativeTtlNanos;
+    }
+
+    @Override
+    public long expireAfterCreate(final String gmcId, final Optional<TraineeCoreDto> value,
+        final long currentTime) {
+      return value.isPresent() ? ttlNanos : negativeTtlNanos;
+    }
+
+    @Override
+    public long expireAfterUpdate(final String gmcId, final Optional<TraineeCoreDto> value,
+        final long currentTime, final long currentDuration) {
+      return expireAfterCreate(gmcId, value, currentTime);
+    }
+
+    @Override
+    public long expireAfterRead(final String gmcId, final Optional<TraineeCoreDto> value,
+        final long currentTime, final long currentDuration) {
+      return currentDuration;
+    }
+  }
+}
@@ -26,14 +26,22 @@ import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import uk.nhs.hee.tis.revalidation.core.dto.ExportFormat;
 import uk.nhs.hee.tis.revalidation.core.dto.TraineeRequestDto;
 import uk.nhs.hee.tis.revalidation.core.dto.TraineeSummaryDto;
 import uk.nhs.hee.tis.revalidation.core.service.DoctorsForDbService;
@@ -58,6 +66,9 @@ public class DoctorsForDbController {
   protected static final String PAGE_NUMBER_VALUE = "0";
   protected static final String SEARCH_QUERY = "searchQuery";
   protected static final String EMPTY_STRING = "";
+  protected static final String CURSOR = "cursor";
+  protected static final String FORMAT = "format";
+  protected static final String NDJSON = "ndjson";
 
   @Value("${app.validation.sort.fields}")
   private List<String> sortFields;
@@ -76,16 +87,21 @@ public class DoctorsForDbController {
    * @param underNotice filter of data to get
    * @param pageNumber page number of data to get
    * @param searchQuery search query of data to get
-   * @return the ResponseEntity with status 200 (OK) and connected summary in body
+   * @param cursor continuation token from the previous page to page by cursor instead of page
+   *     number, an empty value starts from the first page
+   * @return the ResponseEntity with status 200 (OK) and connected summary in body, completed
+   *     asynchronously so the request thread is not held while TCS is called, or with status 503
+   *     (Service Unavailable) when too many summaries are already being built
    */
   @ApiOperation(value = "All trainee doctors information",
       notes = "It will return all the information about trainee doctors",
       response = TraineeSummaryDto.class)
   @ApiResponses(value = {
       @ApiResponse(code = 200, message = "Trainee gmc all doctors data",
-          response = TraineeSummaryDto.class)})
+          response = TraineeSummaryDto.class),
+      @ApiResponse(code = 503, message = "Too many trainee summary requests in progress")})
   @GetMapping
-  public ResponseEntity<TraineeSummaryDto> getTraineeDoctorsInformation(
+  public CompletableFuture<ResponseEntity<TraineeSummaryDto>> getTraineeDoctorsInformation(
       @RequestParam(name = SORT_COLUMN, defaultValue = SUBMISSION_DATE, required = false)
       final String sortColumn,
       @RequestParam(name = SORT_ORDER, defaultValue = DESC, required = false)
@@ -95,20 +111,57 @@ public class DoctorsForDbController {
       @RequestParam(name = PAGE_NUMBER, defaultValue = PAGE_NUMBER_VALUE, required = false)
       final int pageNumber,
       @RequestParam(name = SEARCH_QUERY, defaultValue = EMPTY_STRING, required = false)
-      final String searchQuery) {
+      final String searchQuery,
+      @RequestParam(name = CURSOR, required = false)
+      final String cursor) {
     final var traineeRequestDto = TraineeRequestDto.builder()
         .sortColumn(sortColumn)
         .sortOrder(sortOrder)
         .underNotice(underNotice)
         .pageNumber(pageNumber)
         .searchQuery(searchQuery)
+        .cursor(cursor)
         .build();
 
     validate(traineeRequestDto);
 
-    final var allTraineeDoctorDetails =
-        doctorsForDbService.getAllTraineeDoctorDetails(traineeRequestDto);
-    return ResponseEntity.ok().body(allTraineeDoctorDetails);
+    return doctorsForDbService.getAllTraineeDoctorDetailsAsync(traineeRequestDto)
+        .thenApply(allTraineeDoctorDetails -> ResponseEntity.ok().body(allTraineeDoctorDetails));
+  }
+
+  /**
+   * GET  /api/doctors/export : stream all trainee doctors.
+   *
+   * @param format format of the export (ndjson or csv)
+   * @param underNotice filter of data to get
+   * @return the ResponseEntity with status 200 (OK) and the doctors streamed in the body
+   */
+  @ApiOperation(value = "Export all trainee doctors information",
+      notes = "It will stream the information about all trainee doctors as ndjson or csv")
+  @ApiResponses(value = {
+      @ApiResponse(code = 200, message = "Trainee gmc all doctors data")})
+  @GetMapping("/export")
+  public ResponseEntity<StreamingResponseBody> exportTraineeDoctorsInformation(
+      @RequestParam(name = FORMAT, defaultValue = NDJSON, required = false)
+      final String format,
+      @RequestParam(name = UNDER_NOTICE, defaultValue = UNDER_NOTICE_VALUE, required = false)
+      final boolean underNotice) {
+    var exportFormat = ExportFormat.fromString(format);
+    if (exportFormat == null) {
+      log.warn("Invalid export format provided: {}, revert to default format: {}", format,
+          NDJSON);
+      exportFormat = ExportFormat.NDJSON;
+    }
+
+    final var contentDisposition = ContentDisposition.attachment()
+        .filename("doctors." + exportFormat.value())
+        .build();
+    final var selectedFormat = exportFormat;
+    return ResponseEntity.ok()
+        .contentType(exportFormat.mediaType())
+        .header(HttpHeaders.CONTENT_DISPOSITION, contentDisposition.toString())
+        .body(outputStream -> doctorsForDbService
+            .exportTraineeDoctorDetails(selectedFormat, underNotice, outputStream));
   }
 
   //TODO: find a better way like separate validator
@@ -126,4 +179,14 @@ public class DoctorsForDbController {
     }
 
   }
+
+  /**
+   * Reject a summary request when the summary executor is saturated, so clients back off instead
+   * of the stages running on the request or event loop threads.
+   */
+  @ExceptionHandler(RejectedExecutionException.class)
+  public ResponseEntity<Void> handleSummaryRejected(final RejectedExecutionException e) {
+    log.warn("Doctors summary executor is saturated, rejecting request: {}", e.getMessage());
+    return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+  }
 }
@@ -0,0 +1,55 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2020 Crown Copyright (Health Education England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.core.dto;
+
+import org.springframework.http.MediaType;
+
+public enum ExportFormat {
+
+  NDJSON("ndjson", MediaType.parseMediaType("application/x-ndjson")),
+  CSV("csv", MediaType.parseMediaType("text/csv"));
+
+  private final String format;
+  private final MediaType mediaType;
+
+  ExportFormat(final String format, final MediaType mediaType) {
+    this.format = format;
+    this.mediaType = mediaType;
+  }
+
+  public static ExportFormat fromString(final String value) {
+    for (final ExportFormat exportFormat : values()) {
+      if (exportFormat.format.equalsIgnoreCase(value)) {
+        return exportFormat;
+      }
+    }
+    return null;
+  }
+
+  public String value() {
+    return format;
+  }
+
+  public MediaType mediaType() {
+    return mediaType;
+  }
+}
@@ -35,4 +35,5 @@ public class TraineeRequestDto {
   private boolean underNotice;
   private int pageNumber;
   private String searchQuery;
+  private String cursor;
 }
@@ -21,6 +21,8 @@
 
 package uk.nhs.hee.tis.revalidation.core.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import io.swagger.annotations.ApiModel;
 import java.util.List;
 import lombok.AllArgsConstructor;
@@ -40,4 +42,7 @@ public class TraineeSummaryDto {
   private long totalPages;
   private long totalResults;
   private List<TraineeInfoDto> traineeInfo;
+  private boolean coreDataDegraded;
+  @JsonInclude(Include.NON_NULL)
+  private String nextCursor;
 }
@@ -26,11 +26,18 @@ import static uk.nhs.hee.tis.revalidation.core.entity.RecommendationStatus.NOT_S
 
 import io.swagger.annotations.ApiModel;
 import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import uk.nhs.hee.tis.revalidation.core.dto.DoctorsForDbDto;
 
@@ -45,6 +52,20 @@ import uk.nhs.hee.tis.revalidation.core.dto.DoctorsForDbDto;
 @ApiModel(description = "Trainee doctors's core profile data")
 public class DoctorsForDb {
 
+  //Fields which are owned by GMC and updated by the GMC sync
+  private static final List<Map.Entry<String, Function<DoctorsForDb, Object>>> GMC_FIELDS =
+      List.of(
+          Map.entry("doctorFirstName", DoctorsForDb::getDoctorFirstName),
+          Map.entry("doctorLastName", DoctorsForDb::getDoctorLastName),
+          Map.entry("submissionDate", DoctorsForDb::getSubmissionDate),
+          Map.entry("dateAdded", DoctorsForDb::getDateAdded),
+          Map.entry("underNotice", DoctorsForDb::getUnderNotice),
+          Map.entry("sanction", DoctorsForDb::getSanction),
+          Map.entry("designatedBodyCode", DoctorsForDb::getDesignatedBodyCode),
+          Map.entry("normalisedFirstName", DoctorsForDb::getNormalisedFirstName),
+          Map.entry("normalisedLastName", DoctorsForDb::getNormalisedLastName),
+          Map.entry("normalisedGmcNumber", DoctorsForDb::getNormalisedGmcNumber));
+
   @Id
   private String gmcReferenceNumber;
   private String doctorFirstName;
@@ -57,6 +78,17 @@ public class DoctorsForDb {
   private LocalDate lastUpdatedDate;
   private String designatedBodyCode;
 
+  //Lower case copies of the searchable fields, so prefix searches can use an index
+  @Indexed
+  private String normalisedFirstName;
+  @Indexed
+  private String normalisedLastName;
+  @Indexed
+  private String normalisedGmcNumber;
+
+  //Hash of the last GMC sync message applied, so unchanged messages can be dropped
+  private Long syncHash;
+
   /**
    * Convert doctorsForDB DTO to entity.
    *
@@ -74,6 +106,35 @@ public class DoctorsForDb {
         .doctorStatus(NOT_STARTED)
         .designatedBodyCode(doctorsForDbDto.getDesignatedBodyCode())
         .lastUpdatedDate(now())
+        .normalisedFirstName(normalise(doctorsForDbDto.getDoctorFirstName()))
+        .normalisedLastName(normalise(doctorsForDbDto.getDoctorLastName()))
+        .normalisedGmcNumber(normalise(doctorsForDbDto.getGmcReferenceNumber()))
         .build();
   }
+
+  /**
+   * Normalise a searchable value to the form stored for search.
+   *
+   * @param value the value to normalise
+   */
+  public static String normalise(final String value) {
+    return value == null ? null : value.trim().toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * Get the GMC owned fields of this doctor which differ from the stored doctor.
+   *
+   * @param stored the doctor as currently stored, null if the doctor is new
+   * @return the changed field values by field name, all GMC fields if the doctor is new
+   */
+  public Map<String, Object> gmcChangesFrom(final DoctorsForDb stored) {
+    final Map<String, Object> changes = new LinkedHashMap<>();
+    for (final var field : GMC_FIELDS) {
+      final var value = field.getValue().apply(this);
+      if (stored == null || !Objects.equals(value, field.getValue().apply(stored))) {
+        changes.put(field.getKey(), value);
+      }
+    }
+    return changes;
+  }
 }
@@ -29,15 +29,20 @@ import uk.nhs.hee.tis.revalidation.core.dto.AdminDto;
 import uk.nhs.hee.tis.revalidation.core.mapper.util.AdminUtil;
 import uk.nhs.hee.tis.revalidation.core.mapper.util.AdminUtil.Email;
 import uk.nhs.hee.tis.revalidation.core.mapper.util.AdminUtil.FullName;
+import uk.nhs.hee.tis.revalidation.core.mapper.util.AdminUtil.UserAttributes;
 import uk.nhs.hee.tis.revalidation.core.mapper.util.AdminUtil.Username;
 
 @Mapper(componentModel = "spring", uses = AdminUtil.class)
 public interface AdminMapper {
 
-  @Mapping(target = "fullName", source = "userType", qualifiedBy = FullName.class)
-  @Mapping(target = "email", source = "userType", qualifiedBy = Email.class)
+  default AdminDto toDto(UserType userType) {
+    return userType == null ? null : toDto(userType, UserAttributes.from(userType));
+  }
+
+  @Mapping(target = "fullName", source = "attributes", qualifiedBy = FullName.class)
+  @Mapping(target = "email", source = "attributes", qualifiedBy = Email.class)
   @Mapping(target = "username", source = "userType", qualifiedBy = Username.class)
-  AdminDto toDto(UserType userType);
+  AdminDto toDto(UserType userType, UserAttributes attributes);
 
   List<AdminDto> toDtos(List<UserType> userTypes);
 }
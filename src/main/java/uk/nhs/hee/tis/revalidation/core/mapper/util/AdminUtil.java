@@ -35,29 +35,13 @@ import software.amazon.awssdk.services.cognitoidentityprovider.model.UserType;
 public class AdminUtil {
 
   @Email
-  public String email(UserType userType) {
-    List<AttributeType> attributes = userType.attributes();
-    return attributes.stream()
-        .filter(attr -> "email".equals(attr.name()))
-        .map(AttributeType::value)
-        .findFirst()
-        .orElse("");
+  public String email(UserAttributes attributes) {
+    return attributes.getEmail();
   }
 
   @FullName
-  public String fullName(UserType userType) {
-    List<AttributeType> attributes = userType.attributes();
-    String familyName = attributes.stream()
-        .filter(attr -> "family_name".equals(attr.name()))
-        .map(AttributeType::value)
-        .findFirst()
-        .orElse("");
-    String givenName = attributes.stream()
-        .filter(attr -> "given_name".equals(attr.name()))
-        .map(AttributeType::value)
-        .findFirst()
-        .orElse("");
-    return givenName + " " + familyName;
+  public String fullName(UserAttributes attributes) {
+    return attributes.getGivenName() + " " + attributes.getFamilyName();
   }
 
   @Username
@@ -65,6 +49,71 @@ public class AdminUtil {
     return userType.username();
   }
 
+  /**
+   * The Cognito attributes used by the admin mappings, read from a user in a single pass.
+   */
+  public static final class UserAttributes {
+
+    private static final String EMAIL = "email";
+    private static final String GIVEN_NAME = "given_name";
+    private static final String FAMILY_NAME = "family_name";
+
+    private final String email;
+    private final String givenName;
+    private final String familyName;
+
+    private UserAttributes(String email, String givenName, String familyName) {
+      this.email = email;
+      this.givenName = givenName;
+      this.familyName = familyName;
+    }
+
+    /**
+     * Read the attributes from the user, the first value of each attribute is used and missing
+     * attributes are read as an empty string.
+     *
+     * @param userType the Cognito user
+     * @return the user's attributes
+     */
+    public static UserAttributes from(UserType userType) {
+      String email = null;
+      String givenName = null;
+      String familyName = null;
+
+      List<AttributeType> attributes = userType.attributes();
+      for (int i = 0; i < attributes.size(); i++) {
+        AttributeType attribute = attributes.get(i);
+        String name = attribute.name();
+
+        if (email == null && EMAIL.equals(name)) {
+          email = attribute.value();
+        } else if (givenName == null && GIVEN_NAME.equals(name)) {
+          givenName = attribute.value();
+        } else if (familyName == null && FAMILY_NAME.equals(name)) {
+          familyName = attribute.value();
+        }
+      }
+
+      return new UserAttributes(orEmpty(email), orEmpty(givenName), orEmpty(familyName));
+    }
+
+    public String getEmail() {
+      return email;
+    }
+
+    public String getGivenName() {
+      return givenName;
+    }
+
+    public String getFamilyName() {
+      return familyName;
+    }
+
+    private static String orEmpty(String value) {
+      return value == null ? "" : value;
+    }
+  }
+
   @Qualifier
   @Target(ElementType.METHOD)
   @Retention(RetentionPolicy.CLASS)
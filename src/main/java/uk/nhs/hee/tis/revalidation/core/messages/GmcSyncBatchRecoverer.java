@@ -0,0 +1,102 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2020 Crown Copyright (Health Education England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.core.messages;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.amqp.ImmediateRequeueAmqpException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.retry.MessageBatchRecoverer;
+import org.springframework.amqp.rabbit.retry.MessageRecoverer;
+import org.springframework.amqp.rabbit.retry.RepublishMessageRecoverer;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import uk.nhs.hee.tis.revalidation.core.dto.DoctorsForDbDto;
+import uk.nhs.hee.tis.revalidation.core.service.DoctorsForDbService;
+
+/**
+ * Recovers a GMC sync batch which has exhausted its retries by saving its doctors one at a time,
+ * so only the messages which fail on their own are sent to the dead letter queue. If a message
+ * can not be sent to the dead letter queue the whole batch is requeued rather than lost.
+ */
+@Slf4j
+@Component
+public class GmcSyncBatchRecoverer implements MessageBatchRecoverer {
+
+  private final DoctorsForDbService doctorsForDbService;
+  private final MessageConverter jsonMessageConverter;
+  private final MessageRecoverer deadLetterRecoverer;
+  private final Counter deadLetterCounter;
+
+  GmcSyncBatchRecoverer(final DoctorsForDbService doctorsForDbService,
+      final MessageConverter jsonMessageConverter, final RabbitTemplate rabbitTemplate,
+      final MeterRegistry meterRegistry,
+      @Value("${app.error.exchange}") final String errorExchange,
+      @Value("${app.error.routingKey}") final String errorRoutingKey) {
+    this.doctorsForDbService = doctorsForDbService;
+    this.jsonMessageConverter = jsonMessageConverter;
+    this.deadLetterRecoverer =
+        new RepublishMessageRecoverer(rabbitTemplate, errorExchange, errorRoutingKey);
+    this.deadLetterCounter = meterRegistry.counter("reval.gmcsync.deadletters");
+  }
+
+  @Override
+  public void recover(final List<Message> messages, final Throwable cause) {
+    log.warn("Retries exhausted for batch of {} GMC sync messages, saving individually",
+        messages.size(), cause);
+
+    var deadLettered = 0;
+    for (final Message message : messages) {
+      try {
+        //Convert as the listener does, the batch may have failed before conversion
+        message.getMessageProperties().setInferredArgumentType(DoctorsForDbDto.class);
+        final var gmcDoctor = (DoctorsForDbDto) jsonMessageConverter.fromMessage(message);
+        doctorsForDbService.updateTrainees(List.of(gmcDoctor));
+      } catch (final RuntimeException e) {
+        log.error("Sending GMC sync message to the dead letter queue", e);
+        deadLetter(message, e);
+        deadLettered++;
+      }
+    }
+
+    if (deadLettered > 0) {
+      throw new AmqpRejectAndDontRequeueException(
+          String.format("Sent %d of %d GMC sync messages to the dead letter queue", deadLettered,
+              messages.size()), cause);
+    }
+  }
+
+  private void deadLetter(final Message message, final Throwable cause) {
+    try {
+      deadLetterRecoverer.recover(message, cause);
+    } catch (final RuntimeException e) {
+      log.error("Unable to send GMC sync message to the dead letter queue, requeueing batch", e);
+      throw new ImmediateRequeueAmqpException("Unable to dead letter GMC sync message", e);
+    }
+    deadLetterCounter.increment();
+  }
+}
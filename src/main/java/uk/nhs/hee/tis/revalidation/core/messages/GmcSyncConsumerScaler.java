@@ -0,0 +1,96 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2020 Crown Copyright (Health Education England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.core.messages;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import uk.nhs.hee.tis.revalidation.core.config.RabbitConfig;
+
+/**
+ * Scales the GMC sync consumers with the depth of the queue, so a sync burst is consumed by up to
+ * the maximum number of consumers and an idle queue falls back to the minimum. This is the only
+ * scaling of the container, it is not given a maximum of its own to scale towards.
+ */
+@Slf4j
+@Component
+public class GmcSyncConsumerScaler {
+
+  @Value("${app.rabbit.queue}")
+  private String queueName;
+
+  @Value("${app.rabbit.consumers.min}")
+  private int minConsumers;
+
+  @Value("${app.rabbit.consumers.max}")
+  private int maxConsumers;
+
+  @Value("${app.rabbit.scaling.messagesPerConsumer}")
+  private int messagesPerConsumer;
+
+  @Autowired
+  private AmqpAdmin amqpAdmin;
+
+  @Autowired
+  private RabbitListenerEndpointRegistry listenerEndpointRegistry;
+
+  private int currentConsumers;
+
+  /**
+   * Set the number of GMC sync consumers from the number of messages waiting on the queue.
+   */
+  @Scheduled(fixedDelayString = "${app.rabbit.scaling.interval}")
+  public void scaleConsumers() {
+    final var container =
+        listenerEndpointRegistry.getListenerContainer(RabbitConfig.GMC_SYNC_LISTENER_ID);
+    if (!(container instanceof SimpleMessageListenerContainer) || !container.isRunning()) {
+      return;
+    }
+
+    final var queueInformation = amqpAdmin.getQueueInfo(queueName);
+    if (queueInformation == null) {
+      log.warn("Unable to read the depth of queue {}", queueName);
+      return;
+    }
+
+    final var targetConsumers = getTargetConsumers(queueInformation.getMessageCount());
+    if (targetConsumers != currentConsumers) {
+      log.info("Scaling GMC sync consumers to {} for queue depth {}", targetConsumers,
+          queueInformation.getMessageCount());
+      ((SimpleMessageListenerContainer) container).setConcurrentConsumers(targetConsumers);
+      currentConsumers = targetConsumers;
+    }
+  }
+
+  int getTargetConsumers(final long queueDepth) {
+    //Zero means one consumer per available processor
+    final var max = Math.max(minConsumers,
+        maxConsumers > 0 ? maxConsumers : Runtime.getRuntime().availableProcessors());
+    final var wanted = (queueDepth + messagesPerConsumer - 1) / messagesPerConsumer;
+    return (int) Math.max(minConsumers, Math.min(max, wanted));
+  }
+}
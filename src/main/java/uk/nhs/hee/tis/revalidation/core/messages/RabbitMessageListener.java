@@ -21,10 +21,13 @@
 
 package uk.nhs.hee.tis.revalidation.core.messages;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.List;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import uk.nhs.hee.tis.revalidation.core.config.RabbitConfig;
 import uk.nhs.hee.tis.revalidation.core.dto.DoctorsForDbDto;
 import uk.nhs.hee.tis.revalidation.core.service.DoctorsForDbService;
 
@@ -32,6 +35,28 @@ import uk.nhs.hee.tis.revalidation.core.service.DoctorsForDbService;
 @Component
 public class RabbitMessageListener {
 
+  private static final String MESSAGES_COUNTER = "reval.gmcsync.messages";
+  private static final String BATCH_TIMER = "reval.gmcsync.batches";
+
   @Autowired
   private DoctorsForDbService doctorsForDbService;
+
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  /**
+   * Save a batch of doctors from the GMC sync. The batch is only acknowledged once it has been
+   * written. When retries are limited a failed batch is retried, then saved one doctor at a time
+   * with any doctor which still fails sent to the dead letter queue. Otherwise a failure returns
+   * the whole batch to the queue.
+   *
+   * @param gmcDoctors doctors received from GMC
+   */
+  @RabbitListener(id = RabbitConfig.GMC_SYNC_LISTENER_ID, queues = "${app.rabbit.queue}",
+      containerFactory = RabbitConfig.GMC_SYNC_CONTAINER_FACTORY)
+  public void receiveMessages(final List<DoctorsForDbDto> gmcDoctors) {
+    log.info("Received batch of {} doctors from GMC sync", gmcDoctors.size());
+    meterRegistry.timer(BATCH_TIMER).record(() -> doctorsForDbService.updateTrainees(gmcDoctors));
+    meterRegistry.counter(MESSAGES_COUNTER).increment(gmcDoctors.size());
+  }
 }
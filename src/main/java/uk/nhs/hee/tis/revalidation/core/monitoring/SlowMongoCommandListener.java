@@ -0,0 +1,193 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2020 Crown Copyright (Health Education England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.core.monitoring;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import uk.nhs.hee.tis.revalidation.core.dto.SlowMongoCommandDto;
+
+/**
+ * Keeps the most recent Mongo commands which took longer than the threshold, with their values
+ * redacted so only the shape of the command is kept.
+ */
+@Slf4j
+@Component
+public class SlowMongoCommandListener implements CommandListener {
+
+  //Driver housekeeping commands and cursor continuations, which have no useful shape
+  private static final Set<String> IGNORED_COMMANDS = Set.of("hello", "ismaster", "isMaster",
+      "ping", "buildInfo", "buildinfo", "saslStart", "saslContinue", "getMore", "killCursors",
+      "endSessions", "getLastError");
+  private static final Set<String> IGNORED_FIELDS = Set.of("lsid", "txnNumber", "$db",
+      "$clusterTime", "$readPreference", "readConcern", "writeConcern", "apiVersion");
+  private static final BsonString REDACTED = new BsonString("?");
+  private static final int MAX_SHAPE_DOCUMENTS = 20;
+
+  @Value("${app.mongo.slowCommands.threshold}")
+  private long thresholdMillis;
+
+  @Value("${app.mongo.slowCommands.maxEntries}")
+  private int maxEntries;
+
+  private final Map<Integer, StartedCommand> startedCommands = new ConcurrentHashMap<>();
+  private final Deque<SlowMongoCommandDto> slowCommands = new ArrayDeque<>();
+
+  @Override
+  public void commandStarted(final CommandStartedEvent event) {
+    final var commandName = event.getCommandName();
+    if (IGNORED_COMMANDS.contains(commandName)) {
+      return;
+    }
+
+    //The command document is only valid during this callback. Cloning the driver's buffer backed
+    //document copies its bytes without decoding them, redaction waits until the command is slow
+    startedCommands.put(event.getRequestId(),
+        new StartedCommand(Instant.now(), event.getDatabaseName(), event.getCommand().clone()));
+  }
+
+  @Override
+  public void commandSucceeded(final CommandSucceededEvent event) {
+    completed(event.getRequestId(), event.getCommandName(),
+        event.getElapsedTime(MILLISECONDS), false);
+  }
+
+  @Override
+  public void commandFailed(final CommandFailedEvent event) {
+    completed(event.getRequestId(), event.getCommandName(),
+        event.getElapsedTime(MILLISECONDS), true);
+  }
+
+  /**
+   * Get the slow commands, most recent first.
+   *
+   * @return the slow commands
+   */
+  public synchronized List<SlowMongoCommandDto> getSlowCommands() {
+    return List.copyOf(slowCommands);
+  }
+
+  /**
+   * Forget the slow commands captured so far.
+   */
+  public synchronized void clear() {
+    slowCommands.clear();
+  }
+
+  private void completed(final int requestId, final String commandName,
+      final long durationMillis, final boolean failed) {
+    final var started = startedCommands.remove(requestId);
+    if (started == null || durationMillis < thresholdMillis) {
+      return;
+    }
+
+    final var target = started.command.get(commandName);
+    final var slowCommand = SlowMongoCommandDto.builder()
+        .startedAt(started.startedAt)
+        .database(started.database)
+        .collection(target != null && target.isString() ? target.asString().getValue() : null)
+        .command(commandName)
+        .durationMillis(durationMillis)
+        .failed(failed)
+        .shape(redact(started.command).toJson())
+        .build();
+    log.warn("Slow Mongo command took {}ms: {}", durationMillis, slowCommand.getShape());
+    remember(slowCommand);
+  }
+
+  private synchronized void remember(final SlowMongoCommandDto slowCommand) {
+    slowCommands.addFirst(slowCommand);
+    while (slowCommands.size() > maxEntries) {
+      slowCommands.removeLast();
+    }
+  }
+
+  /**
+   * Copy the command with every value replaced by a placeholder. The names of the command, the
+   * collection and the fields are kept, arrays of values are collapsed to one placeholder.
+   */
+  private static BsonDocument redact(final BsonDocument command) {
+    final var shape = new BsonDocument();
+    var first = true;
+    for (final Map.Entry<String, BsonValue> entry : command.entrySet()) {
+      final var name = entry.getKey();
+      if (first) {
+        //The first field names the command and its value is the collection, which is kept
+        shape.put(name, entry.getValue());
+        first = false;
+      } else if (!IGNORED_FIELDS.contains(name)) {
+        shape.put(name, redactValue(entry.getValue()));
+      }
+    }
+    return shape;
+  }
+
+  private static BsonValue redactValue(final BsonValue value) {
+    if (value.isDocument()) {
+      final var shape = new BsonDocument();
+      value.asDocument().forEach((name, fieldValue) -> shape.put(name, redactValue(fieldValue)));
+      return shape;
+    }
+
+    if (value.isArray()) {
+      final var values = value.asArray();
+      if (!values.isEmpty() && values.stream().allMatch(BsonValue::isDocument)) {
+        final var shape = new BsonArray();
+        values.stream().limit(MAX_SHAPE_DOCUMENTS).map(SlowMongoCommandListener::redactValue)
+            .forEach(shape::add);
+        return shape;
+      }
+    }
+    return REDACTED;
+  }
+
+  private static final class StartedCommand {
+
+    private final Instant startedAt;
+    private final String database;
+    private final BsonDocument command;
+
+    private StartedCommand(final Instant startedAt, final String database,
+        final BsonDocument command) {
+      this.startedAt = startedAt;
+      this.database = database;
+      this.command = command;
+    }
+  }
+}
@@ -0,0 +1,53 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2020 Crown Copyright (Health Education England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.core.monitoring;
+
+import java.util.List;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+import uk.nhs.hee.tis.revalidation.core.dto.SlowMongoCommandDto;
+
+/**
+ * Actuator endpoint listing the recent slow Mongo commands.
+ */
+@Component
+@Endpoint(id = "mongoSlowCommands")
+public class SlowMongoCommandsEndpoint {
+
+  private final SlowMongoCommandListener slowMongoCommandListener;
+
+  public SlowMongoCommandsEndpoint(final SlowMongoCommandListener slowMongoCommandListener) {
+    this.slowMongoCommandListener = slowMongoCommandListener;
+  }
+
+  @ReadOperation
+  public List<SlowMongoCommandDto> slowCommands() {
+    return slowMongoCommandListener.getSlowCommands();
+  }
+
+  @DeleteOperation
+  public void clear() {
+    slowMongoCommandListener.clear();
+  }
+}
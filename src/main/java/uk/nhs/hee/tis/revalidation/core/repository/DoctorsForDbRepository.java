@@ -21,72 +21,25 @@
 
 package uk.nhs.hee.tis.revalidation.core.repository;
 
-import static java.util.List.of;
-
-import java.util.List;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
+import java.util.stream.Stream;
+import org.springframework.data.mongodb.repository.Meta;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 import uk.nhs.hee.tis.revalidation.core.entity.DoctorsForDb;
 import uk.nhs.hee.tis.revalidation.core.entity.UnderNotice;
 
 @Repository
-public interface DoctorsForDbRepository extends MongoRepository<DoctorsForDb, String> {
+public interface DoctorsForDbRepository extends MongoRepository<DoctorsForDb, String>,
+    DoctorsForDbRepositoryCustom {
 
   //Get count for trainee doctors who are underNotice
   long countByUnderNoticeIn(final UnderNotice... underNotice);
 
-  //Get trainee doctors as part of search results (search by first name or last name or gmc number).
-  //TODO: look at the query option too
-  Page<DoctorsForDb> findByDoctorFirstNameIgnoreCaseLikeOrDoctorLastNameIgnoreCaseLikeOrGmcReferenceNumberIgnoreCaseLike(
-      final Pageable pageable,
-      final String firstName,
-      final String lastName,
-      final String gmcNumber);
-
-  //Get under notice trainee doctors as part of search results
-  // (search by first name or last name or gmc number).
-  //TODO: look at the query option too
-  Page<DoctorsForDb> findByDoctorFirstNameIgnoreCaseLikeAndUnderNoticeInOrDoctorLastNameIgnoreCaseLikeAndUnderNoticeInOrGmcReferenceNumberIgnoreCaseLikeAndUnderNoticeIn(
-      final Pageable pageable,
-      final String firstName,
-      final List<UnderNotice> un1,
-      final String lastName,
-      final List<UnderNotice> un2,
-      final String gmcNumber,
-      final List<UnderNotice> un3);
-
-  /**
-   * A wrapper search method of doctors to make it easy for use.
-   *
-   * @param pageable pagination information
-   * @param searchQuery query to run
-   */
-  default Page<DoctorsForDb> findAll(final Pageable pageable, final String searchQuery) {
-    return findByDoctorFirstNameIgnoreCaseLikeOrDoctorLastNameIgnoreCaseLikeOrGmcReferenceNumberIgnoreCaseLike(
-        pageable,
-        searchQuery,
-        searchQuery,
-        searchQuery);
-  }
+  //Stream all trainee doctors through a cursor for exports
+  @Meta(cursorBatchSize = 500)
+  Stream<DoctorsForDb> streamAllBy();
 
-  /**
-   * A wrapper search method of under notice doctors to make it easy for use.
-   *
-   * @param pageable pagination information
-   * @param searchQuery query to run
-   * @param underNotice for filtering information
-   */
-  default Page<DoctorsForDb> findAllByUnderNoticeIn(final Pageable pageable,
-      final String searchQuery, final UnderNotice... underNotice) {
-    return findByDoctorFirstNameIgnoreCaseLikeAndUnderNoticeInOrDoctorLastNameIgnoreCaseLikeAndUnderNoticeInOrGmcReferenceNumberIgnoreCaseLikeAndUnderNoticeIn(
-        pageable,
-        searchQuery,
-        of(underNotice),
-        searchQuery,
-        of(underNotice),
-        searchQuery,
-        of(underNotice));
-  }
+  //Stream trainee doctors who are underNotice through a cursor for exports
+  @Meta(cursorBatchSize = 500)
+  Stream<DoctorsForDb> streamByUnderNoticeIn(final UnderNotice... underNotice);
 }
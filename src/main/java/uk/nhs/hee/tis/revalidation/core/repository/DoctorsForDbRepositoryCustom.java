@@ -0,0 +1,96 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2020 Crown Copyright (Health Education England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.core.repository;
+
+import com.mongodb.bulk.BulkWriteResult;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import uk.nhs.hee.tis.revalidation.core.entity.DoctorsForDb;
+import uk.nhs.hee.tis.revalidation.core.entity.UnderNotice;
+
+/**
+ * Doctors queries which are built by hand rather than derived from method names.
+ */
+public interface DoctorsForDbRepositoryCustom {
+
+  /**
+   * Get a page of doctors matching the search along with the total number of matches, using a
+   * single aggregation rather than separate find and count queries. The count reads every
+   * matching doctor, so without a search or filter the page is found directly and the total is
+   * the estimated collection count instead. The collection and under notice totals for the
+   * summary are not counted here, they come from the maintained counters of DoctorCountService.
+   *
+   * @param pageable    pagination information
+   * @param searchQuery query to run (search by first name or last name or gmc number)
+   * @param underNotice under notice statuses to filter by, all doctors if none given
+   */
+  Page<DoctorsForDb> findPageWithTotal(Pageable pageable, String searchQuery,
+      UnderNotice... underNotice);
+
+  /**
+   * Get the doctors matching the search which sort after the last doctor already returned, using
+   * the GMC number to break ties, so the cost of a page does not depend on how deep it is.
+   *
+   * @param order          sort column and direction
+   * @param afterValue     sort column value of the last doctor returned, as a string
+   * @param afterGmcNumber GMC number of the last doctor returned, null for the first page
+   * @param limit          maximum number of doctors to return
+   * @param searchQuery    query to run (search by first name or last name or gmc number)
+   * @param underNotice    under notice statuses to filter by, all doctors if none given
+   */
+  List<DoctorsForDb> findPageAfter(Sort.Order order, String afterValue, String afterGmcNumber,
+      int limit, String searchQuery, UnderNotice... underNotice);
+
+  /**
+   * Apply the changed GMC fields of each doctor with a single unordered bulk write. Each doctor
+   * has the given fields and the last updated date set, new doctors are inserted with a
+   * recommendation status of not started while existing statuses are left alone. A doctor
+   * already stored with the given sync hash is not written again.
+   *
+   * @param changesByGmcNumber the changed field values by field name, including the sync hash,
+   *                           keyed by GMC number
+   * @return the result of the bulk write
+   */
+  BulkWriteResult saveGmcChanges(Map<String, Map<String, Object>> changesByGmcNumber);
+
+  /**
+   * Set the GMC fields of each existing doctor whose stored sync hash differs from the given one,
+   * with a single unordered bulk write. Doctors stored with the same sync hash match nothing and
+   * are not written.
+   *
+   * @param gmcDataByGmcNumber all GMC field values by field name, including the sync hash, keyed
+   *                           by GMC number
+   * @return the result of the bulk write
+   */
+  BulkWriteResult reapplyGmcData(Map<String, Map<String, Object>> gmcDataByGmcNumber);
+
+  /**
+   * Read the GMC sync hash of every doctor which has one, through a cursor.
+   *
+   * @param consumer consumer of each GMC number and its sync hash
+   */
+  void findAllSyncHashes(BiConsumer<String, Long> consumer);
+}
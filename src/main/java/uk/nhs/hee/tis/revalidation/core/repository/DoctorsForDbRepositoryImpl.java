@@ -0,0 +1,280 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2020 Crown Copyright (Health Education England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.core.repository;
+
+import static java.util.stream.Collectors.toList;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.count;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.facet;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.limit;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.match;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.newAggregation;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.skip;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.sort;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+import com.mongodb.bulk.BulkWriteResult;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.regex.Pattern;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.CriteriaDefinition;
+import org.springframework.data.mongodb.core.query.MongoRegexCreator;
+import org.springframework.data.mongodb.core.query.MongoRegexCreator.MatchMode;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.TextCriteria;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.util.StringUtils;
+import uk.nhs.hee.tis.revalidation.core.entity.DoctorsForDb;
+import uk.nhs.hee.tis.revalidation.core.entity.RecommendationStatus;
+import uk.nhs.hee.tis.revalidation.core.entity.UnderNotice;
+
+public class DoctorsForDbRepositoryImpl implements DoctorsForDbRepositoryCustom {
+
+  private static final String CASE_INSENSITIVE = "i";
+  private static final String WILDCARD = "*";
+  private static final String PAGE = "page";
+  private static final String TOTAL = "total";
+  private static final String GMC_NUMBER = "gmcReferenceNumber";
+  private static final String SYNC_HASH = "syncHash";
+  private static final int DUPLICATE_KEY = 11000;
+
+  private final MongoTemplate mongoTemplate;
+  private final SearchMode searchMode;
+
+  DoctorsForDbRepositoryImpl(final MongoTemplate mongoTemplate,
+      @Value("${app.reval.search.mode}") final SearchMode searchMode) {
+    this.mongoTemplate = mongoTemplate;
+    this.searchMode = searchMode;
+  }
+
+  @Override
+  public Page<DoctorsForDb> findPageWithTotal(final Pageable pageable, final String searchQuery,
+      final UnderNotice... underNotice) {
+    final var searchCriteria = searchCriteria(searchQuery, underNotice);
+    if (searchCriteria.isEmpty()) {
+      //Counting through the facet would read every doctor, the estimated count comes from the
+      //collection metadata and the page alone can be read in index order
+      final var doctors = mongoTemplate.find(new Query().with(pageable), DoctorsForDb.class);
+      final var total =
+          mongoTemplate.estimatedCount(mongoTemplate.getCollectionName(DoctorsForDb.class));
+      return new PageImpl<>(doctors, pageable, total);
+    }
+
+    final List<AggregationOperation> operations = new ArrayList<>();
+    searchCriteria.forEach(criteria -> operations.add(match(criteria)));
+    if (pageable.getSort().isSorted()) {
+      operations.add(sort(pageable.getSort()));
+    }
+    operations.add(facet(skip(pageable.getOffset()), limit(pageable.getPageSize())).as(PAGE)
+        .and(count().as(TOTAL)).as(TOTAL));
+
+    final var aggregation = newAggregation(DoctorsForDb.class, operations)
+        .withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+    final var result = mongoTemplate.aggregate(aggregation, Document.class).getUniqueMappedResult();
+    if (result == null) {
+      return Page.empty(pageable);
+    }
+
+    final var converter = mongoTemplate.getConverter();
+    final var doctors = result.getList(PAGE, Document.class).stream()
+        .map(document -> converter.read(DoctorsForDb.class, document))
+        .collect(toList());
+    final var totals = result.getList(TOTAL, Document.class);
+    final long total = totals.isEmpty() ? 0 : totals.get(0).get(TOTAL, Number.class).longValue();
+    return new PageImpl<>(doctors, pageable, total);
+  }
+
+  @Override
+  public List<DoctorsForDb> findPageAfter(final Sort.Order order, final String afterValue,
+      final String afterGmcNumber, final int limit, final String searchQuery,
+      final UnderNotice... underNotice) {
+    final var query = new Query();
+    searchCriteria(searchQuery, underNotice).forEach(query::addCriteria);
+    if (afterGmcNumber != null) {
+      //Wrapped in $and as the search criteria may already use the top level $or
+      query.addCriteria(new Criteria().andOperator(
+          keysetCriteria(order, toPropertyValue(order.getProperty(), afterValue), afterGmcNumber)));
+    }
+    query.with(Sort.by(order, new Sort.Order(order.getDirection(), GMC_NUMBER))).limit(limit);
+    return mongoTemplate.find(query, DoctorsForDb.class);
+  }
+
+  @Override
+  public BulkWriteResult saveGmcChanges(
+      final Map<String, Map<String, Object>> changesByGmcNumber) {
+    final var lastUpdatedDate = LocalDate.now();
+    final var bulkOperations = mongoTemplate.bulkOps(BulkMode.UNORDERED, DoctorsForDb.class);
+    changesByGmcNumber.forEach((gmcNumber, changes) -> {
+      final var update = gmcUpdate(changes, lastUpdatedDate)
+          .setOnInsert("doctorStatus", RecommendationStatus.NOT_STARTED);
+      bulkOperations.upsert(syncHashChanged(gmcNumber, changes), update);
+    });
+
+    try {
+      return bulkOperations.execute();
+    } catch (final BulkOperationException e) {
+      //An upsert of a doctor already stored with the same sync hash tries to insert it again,
+      //the message has already been applied by another consumer so that is not an error
+      if (e.getErrors().stream().allMatch(error -> error.getCode() == DUPLICATE_KEY)) {
+        return e.getResult();
+      }
+      throw e;
+    }
+  }
+
+  @Override
+  public BulkWriteResult reapplyGmcData(
+      final Map<String, Map<String, Object>> gmcDataByGmcNumber) {
+    final var lastUpdatedDate = LocalDate.now();
+    final var bulkOperations = mongoTemplate.bulkOps(BulkMode.UNORDERED, DoctorsForDb.class);
+    gmcDataByGmcNumber.forEach((gmcNumber, gmcData) -> bulkOperations.updateOne(
+        syncHashChanged(gmcNumber, gmcData), gmcUpdate(gmcData, lastUpdatedDate)));
+    return bulkOperations.execute();
+  }
+
+  @Override
+  public void findAllSyncHashes(final BiConsumer<String, Long> consumer) {
+    final var query = new Query(where(SYNC_HASH).exists(true));
+    query.fields().include(SYNC_HASH);
+    query.cursorBatchSize(1000);
+    try (var documents = mongoTemplate.stream(query, Document.class,
+        mongoTemplate.getCollectionName(DoctorsForDb.class))) {
+      documents.forEachRemaining(document ->
+          consumer.accept(document.getString("_id"), document.getLong(SYNC_HASH)));
+    }
+  }
+
+  private Query syncHashChanged(final String gmcNumber, final Map<String, Object> gmcFields) {
+    return new Query(where(GMC_NUMBER).is(gmcNumber).and(SYNC_HASH).ne(gmcFields.get(SYNC_HASH)));
+  }
+
+  private Update gmcUpdate(final Map<String, Object> gmcFields, final LocalDate lastUpdatedDate) {
+    final var update = new Update().set("lastUpdatedDate", lastUpdatedDate);
+    gmcFields.forEach(update::set);
+    return update;
+  }
+
+  /**
+   * Build the criteria for a doctors search using the configured search mode, any text search
+   * criteria comes first as it must be the first stage of an aggregation.
+   */
+  private List<CriteriaDefinition> searchCriteria(final String searchQuery,
+      final UnderNotice... underNotice) {
+    final List<CriteriaDefinition> criteria = new ArrayList<>();
+
+    if (StringUtils.hasLength(searchQuery)) {
+      final var terms = searchQuery.replace(WILDCARD, " ").trim();
+      if (searchMode == SearchMode.TEXT) {
+        if (!terms.isEmpty()) {
+          criteria.add(TextCriteria.forDefaultLanguage().matching(terms));
+        }
+      } else if (searchMode == SearchMode.PREFIX && !searchQuery.startsWith(WILDCARD)) {
+        criteria.add(prefixCriteria(searchQuery));
+      } else {
+        criteria.add(regexCriteria(searchQuery));
+      }
+    }
+
+    if (underNotice.length > 0) {
+      criteria.add(where("underNotice").in((Object[]) underNotice));
+    }
+
+    return criteria;
+  }
+
+  /**
+   * Match names and GMC number the same way as an "IgnoreCaseLike" derived query.
+   */
+  private Criteria regexCriteria(final String searchQuery) {
+    final var regex = MongoRegexCreator.INSTANCE.toRegularExpression(searchQuery, MatchMode.LIKE);
+    return new Criteria().orOperator(
+        where("doctorFirstName").regex(regex, CASE_INSENSITIVE),
+        where("doctorLastName").regex(regex, CASE_INSENSITIVE),
+        where("gmcReferenceNumber").regex(regex, CASE_INSENSITIVE));
+  }
+
+  /**
+   * Match the start of the normalised names and GMC number, a trailing wildcard is ignored.
+   */
+  private Criteria prefixCriteria(final String searchQuery) {
+    var prefix = searchQuery;
+    while (prefix.endsWith(WILDCARD)) {
+      prefix = prefix.substring(0, prefix.length() - 1);
+    }
+
+    final var regex = "^" + Pattern.quote(DoctorsForDb.normalise(prefix));
+    return new Criteria().orOperator(
+        where("normalisedFirstName").regex(regex),
+        where("normalisedLastName").regex(regex),
+        where("normalisedGmcNumber").regex(regex));
+  }
+
+  /**
+   * Match doctors sorting after the given position, Mongo sorts missing and null values before
+   * any other value.
+   */
+  private Criteria keysetCriteria(final Sort.Order order, final Object afterValue,
+      final String afterGmcNumber) {
+    final var field = order.getProperty();
+    final var ascending = order.isAscending();
+    final var afterGmc = ascending ? where(GMC_NUMBER).gt(afterGmcNumber)
+        : where(GMC_NUMBER).lt(afterGmcNumber);
+
+    if (afterValue == null) {
+      final var tie = new Criteria().andOperator(where(field).is(null), afterGmc);
+      return ascending ? new Criteria().orOperator(where(field).ne(null), tie) : tie;
+    }
+
+    final var after = ascending ? where(field).gt(afterValue) : where(field).lt(afterValue);
+    final var tie = new Criteria().andOperator(where(field).is(afterValue), afterGmc);
+    return ascending ? new Criteria().orOperator(after, tie)
+        : new Criteria().orOperator(after, tie, where(field).is(null));
+  }
+
+  /**
+   * Convert a sort value held as a string back to the type of the doctors property.
+   */
+  private Object toPropertyValue(final String property, final String value) {
+    if (value == null) {
+      return null;
+    }
+
+    final var type = mongoTemplate.getConverter().getMappingContext()
+        .getRequiredPersistentEntity(DoctorsForDb.class)
+        .getRequiredPersistentProperty(property).getType();
+    return type == LocalDate.class ? LocalDate.parse(value) : value;
+  }
+}
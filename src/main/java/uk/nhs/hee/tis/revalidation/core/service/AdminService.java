@@ -21,9 +21,18 @@
 
 package uk.nhs.hee.tis.revalidation.core.service;
 
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.metrics.http.Outcome;
 import org.springframework.stereotype.Service;
+import software.amazon.awssdk.core.exception.SdkServiceException;
 import software.amazon.awssdk.services.cognitoidentityprovider.CognitoIdentityProviderClient;
 import software.amazon.awssdk.services.cognitoidentityprovider.model.ListUsersInGroupRequest;
 import software.amazon.awssdk.services.cognitoidentityprovider.model.ListUsersInGroupResponse;
@@ -31,9 +40,15 @@ import software.amazon.awssdk.services.cognitoidentityprovider.model.UserType;
 import uk.nhs.hee.tis.revalidation.core.dto.AdminDto;
 import uk.nhs.hee.tis.revalidation.core.mapper.AdminMapper;
 
+@Slf4j
 @Service
 public class AdminService {
 
+  private static final String ADMINS_KEY = "admins";
+  private static final String COGNITO_TIMER = "reval.cognito.requests";
+  private static final String OPERATION = "operation";
+  private static final String OUTCOME = "outcome";
+
   @Value("${app.cognito.admin-group}")
   private String adminGroup;
 
@@ -42,10 +57,21 @@ public class AdminService {
 
   private final CognitoIdentityProviderClient cognitoIdentityProviderClient;
   private AdminMapper mapper;
+  private final MeterRegistry meterRegistry;
+  private final LoadingCache<String, List<AdminDto>> adminsCache;
 
-  AdminService(CognitoIdentityProviderClient cognitoIdentityProviderClient, AdminMapper mapper) {
+  AdminService(CognitoIdentityProviderClient cognitoIdentityProviderClient, AdminMapper mapper,
+      MeterRegistry meterRegistry,
+      @Value("${app.cognito.admin-cache-ttl}") Duration adminCacheTtl) {
     this.cognitoIdentityProviderClient = cognitoIdentityProviderClient;
     this.mapper = mapper;
+    this.meterRegistry = meterRegistry;
+
+    // Once the TTL has passed the cached admins are still returned while a single background
+    // refresh runs, if the refresh fails the previous admins are kept.
+    this.adminsCache = Caffeine.newBuilder()
+        .refreshAfterWrite(adminCacheTtl)
+        .build(key -> loadAssignableAdmins());
   }
 
   /**
@@ -54,16 +80,47 @@ public class AdminService {
    * @return A list of admins.
    */
   public List<AdminDto> getAssignableAdmins() {
-    ListUsersInGroupRequest request = ListUsersInGroupRequest.builder()
-        .groupName(adminGroup)
-        .userPoolId(adminUserPool)
-        .build();
+    return adminsCache.get(ADMINS_KEY);
+  }
 
-    // TODO: A limited number of users can be returned before pagination occurs, handle pagination.
-    ListUsersInGroupResponse listUsersResponse = cognitoIdentityProviderClient.listUsersInGroup(
-        request);
-    List<UserType> userTypeList = listUsersResponse.users();
+  /**
+   * Load every admin in the admin group, following each page of the group listing.
+   *
+   * @return A list of admins.
+   */
+  private List<AdminDto> loadAssignableAdmins() {
+    List<UserType> userTypeList = new ArrayList<>();
+    String nextToken = null;
+
+    do {
+      ListUsersInGroupRequest request = ListUsersInGroupRequest.builder()
+          .groupName(adminGroup)
+          .userPoolId(adminUserPool)
+          .nextToken(nextToken)
+          .build();
+
+      ListUsersInGroupResponse listUsersResponse = listUsersInGroup(request);
+      userTypeList.addAll(listUsersResponse.users());
+      nextToken = listUsersResponse.nextToken();
+    } while (nextToken != null);
+
+    log.info("Loaded {} assignable admins", userTypeList.size());
+    return List.copyOf(mapper.toDtos(userTypeList));
+  }
 
-    return mapper.toDtos(userTypeList);
+  private ListUsersInGroupResponse listUsersInGroup(ListUsersInGroupRequest request) {
+    Timer.Sample sample = Timer.start(meterRegistry);
+    Outcome outcome = Outcome.UNKNOWN;
+    try {
+      ListUsersInGroupResponse response = cognitoIdentityProviderClient.listUsersInGroup(request);
+      outcome = Outcome.SUCCESS;
+      return response;
+    } catch (SdkServiceException exception) {
+      outcome = Outcome.forStatus(exception.statusCode());
+      throw exception;
+    } finally {
+      sample.stop(meterRegistry.timer(COGNITO_TIMER, OPERATION, "ListUsersInGroup", OUTCOME,
+          outcome.name()));
+    }
   }
 }
@@ -0,0 +1,104 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2020 Crown Copyright (Health Education England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.core.service;
+
+import static uk.nhs.hee.tis.revalidation.core.entity.UnderNotice.ON_HOLD;
+import static uk.nhs.hee.tis.revalidation.core.entity.UnderNotice.YES;
+
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import uk.nhs.hee.tis.revalidation.core.entity.DoctorsForDb;
+import uk.nhs.hee.tis.revalidation.core.entity.UnderNotice;
+import uk.nhs.hee.tis.revalidation.core.repository.DoctorsForDbRepository;
+
+/**
+ * In-memory counters for the summary page, kept up to date as doctors are saved.
+ */
+@Slf4j
+@Service
+public class DoctorCountService {
+
+  private final AtomicLong countTotal = new AtomicLong();
+  private final AtomicLong countUnderNotice = new AtomicLong();
+  private volatile boolean seeded;
+
+  @Autowired
+  private DoctorsForDbRepository doctorsRepository;
+
+  public long getCountAll() {
+    seedIfRequired();
+    return countTotal.get();
+  }
+
+  public long getCountUnderNotice() {
+    seedIfRequired();
+    return countUnderNotice.get();
+  }
+
+  /**
+   * Adjust the counters after a doctor has been saved.
+   *
+   * @param previous the doctor as stored before the save, null if the doctor is new
+   * @param current  the doctor as saved
+   */
+  public void onDoctorSaved(final DoctorsForDb previous, final DoctorsForDb current) {
+    if (previous == null) {
+      countTotal.incrementAndGet();
+    }
+
+    final var wasUnderNotice = previous != null && isUnderNotice(previous.getUnderNotice());
+    final var isUnderNotice = isUnderNotice(current.getUnderNotice());
+    if (wasUnderNotice != isUnderNotice) {
+      countUnderNotice.addAndGet(isUnderNotice ? 1 : -1);
+    }
+  }
+
+  /**
+   * Recount both counters from the database, correcting any drift from missed updates.
+   */
+  @Scheduled(fixedDelayString = "${app.reval.count.refreshInterval}")
+  public synchronized void recount() {
+    final var total = doctorsRepository.count();
+    final var underNotice = doctorsRepository.countByUnderNoticeIn(YES, ON_HOLD);
+    countTotal.set(total);
+    countUnderNotice.set(underNotice);
+    seeded = true;
+    log.debug("Recounted doctors, total: {}, under notice: {}", total, underNotice);
+  }
+
+  private void seedIfRequired() {
+    if (!seeded) {
+      synchronized (this) {
+        if (!seeded) {
+          recount();
+        }
+      }
+    }
+  }
+
+  private static boolean isUnderNotice(final UnderNotice underNotice) {
+    return underNotice == YES || underNotice == ON_HOLD;
+  }
+}
@@ -21,6 +21,8 @@
 
 package uk.nhs.hee.tis.revalidation.core.service;
 
+import static java.util.concurrent.CompletableFuture.supplyAsync;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.stream.Collectors.toList;
 import static org.springframework.data.domain.PageRequest.of;
 import static org.springframework.data.domain.Sort.Direction.ASC;
@@ -29,59 +31,278 @@ import static org.springframework.data.domain.Sort.by;
 import static uk.nhs.hee.tis.revalidation.core.entity.UnderNotice.ON_HOLD;
 import static uk.nhs.hee.tis.revalidation.core.entity.UnderNotice.YES;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Direction;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import uk.nhs.hee.tis.revalidation.core.config.ExecutorConfig;
 import uk.nhs.hee.tis.revalidation.core.dto.DoctorsForDbDto;
+import uk.nhs.hee.tis.revalidation.core.dto.ExportFormat;
 import uk.nhs.hee.tis.revalidation.core.dto.TraineeCoreDto;
 import uk.nhs.hee.tis.revalidation.core.dto.TraineeInfoDto;
 import uk.nhs.hee.tis.revalidation.core.dto.TraineeRequestDto;
 import uk.nhs.hee.tis.revalidation.core.dto.TraineeSummaryDto;
+import uk.nhs.hee.tis.revalidation.core.dto.TraineeSummaryDto.TraineeSummaryDtoBuilder;
 import uk.nhs.hee.tis.revalidation.core.entity.DoctorsForDb;
+import uk.nhs.hee.tis.revalidation.core.entity.UnderNotice;
 import uk.nhs.hee.tis.revalidation.core.repository.DoctorsForDbRepository;
 
+@Slf4j
 @Transactional
 @Service
 public class DoctorsForDbService {
 
+  private static final String SUMMARY_TIMER = "reval.doctors.summary";
+  private static final String STAGE = "stage";
+  private static final String QUERY_STAGE = "query";
+  private static final String COUNTS_STAGE = "counts";
+  private static final String TCS_STAGE = "tcs";
+  private static final String CONVERSION_STAGE = "conversion";
+  private static final UnderNotice[] UNDER_NOTICE = {YES, ON_HOLD};
+  private static final UnderNotice[] ANY_NOTICE = {};
+  private static final byte[] NEW_LINE = "\n".getBytes(StandardCharsets.UTF_8);
+  private static final String CSV_HEADER = String.join(",", "gmcReferenceNumber",
+      "doctorFirstName", "doctorLastName", "submissionDate", "dateAdded", "underNotice",
+      "sanction", "doctorStatus", "programmeName", "programmeMembershipType", "curriculumEndDate",
+      "currentGrade", "lastUpdatedDate");
 
   @Value("${app.reval.pagination.pageSize}")
   private int pageSize;
 
+  @Value("${app.reval.summary.timeout.query}")
+  private long queryTimeout;
+
+  @Value("${app.reval.summary.timeout.tcs}")
+  private long tcsTimeout;
+
+  @Value("${app.reval.export.batchSize}")
+  private int exportBatchSize;
+
+  @Autowired
+  @Qualifier(ExecutorConfig.DOCTORS_SUMMARY_EXECUTOR)
+  private Executor doctorsSummaryExecutor;
+
   @Autowired
   private DoctorsForDbRepository doctorsRepository;
 
   @Autowired
   private TraineeCoreService traineeCoreService;
 
+  @Autowired
+  private DoctorCountService doctorCountService;
+
+  @Autowired
+  private GmcSyncHashCache gmcSyncHashCache;
+
+  @Autowired
+  private DoctorsSummaryCache doctorsSummaryCache;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Autowired
+  private MeterRegistry meterRegistry;
+
   /**
-   * Get trainee doctors details.
+   * Get trainee doctors details. The page of doctors and the count of matching doctors come from
+   * a single aggregation, with the TCS enrichment starting as soon as the page is available. Each
+   * stage has its own timeout, measured from the start of the request; if the enrichment times
+   * out the summary is returned without it. The time taken by each stage is recorded by the
+   * {@code reval.doctors.summary} timer, tagged with the stage.
+   *
+   * <p>When the request has a cursor the page is instead read after the cursor position and the
+   * matching doctors are not counted, so the cost does not grow with the depth of the page.
    *
    * @param requestDto sort, page and search request for run
    */
   public TraineeSummaryDto getAllTraineeDoctorDetails(final TraineeRequestDto requestDto) {
-    final var paginatedDoctors = getSortedAndFilteredDoctorsByPageNumber(requestDto);
-    final var doctorsList = paginatedDoctors.get().collect(toList());
-    final var gmcIds =
-        doctorsList.stream().map(doc -> doc.getGmcReferenceNumber()).collect(toList());
-    final var traineeCoreInfo = traineeCoreService.getTraineeInformationFromCore(gmcIds);
-    final var traineeDoctors = doctorsList.stream().map(d ->
-        convert(d, traineeCoreInfo.get(d.getGmcReferenceNumber()))).collect(toList());
-
-    return TraineeSummaryDto.builder()
-        .traineeInfo(traineeDoctors)
-        .countTotal(getCountAll())
-        .countUnderNotice(getCountUnderNotice())
-        .totalPages(paginatedDoctors.getTotalPages())
-        .totalResults(paginatedDoctors.getTotalElements())
-        .build();
+    return join(getAllTraineeDoctorDetailsAsync(requestDto));
+  }
+
+  /**
+   * Get trainee doctors details without blocking the calling thread. The database query runs on
+   * the summary executor while the TCS enrichment is composed onto it without holding a thread,
+   * so the number of threads in use does not grow with the TCS latency. Repeated requests are
+   * served from the {@link DoctorsSummaryCache} until it expires or a doctor is saved.
+   *
+   * @param requestDto sort, page and search request for run
+   * @return a future of the trainee doctors details
+   * @see #getAllTraineeDoctorDetails(TraineeRequestDto)
+   */
+  public CompletableFuture<TraineeSummaryDto> getAllTraineeDoctorDetailsAsync(
+      final TraineeRequestDto requestDto) {
+    return doctorsSummaryCache.getOrLoad(requestDto, this::loadTraineeDoctorDetails);
+  }
+
+  private CompletableFuture<TraineeSummaryDto> loadTraineeDoctorDetails(
+      final TraineeRequestDto requestDto) {
+    if (requestDto.getCursor() != null) {
+      return getTraineeDoctorDetailsAfterCursor(requestDto);
+    }
+
+    final var pageable = getPageable(requestDto);
+    final var searchQuery = requestDto.getSearchQuery();
+    final var underNotice = getUnderNotice(requestDto);
+
+    final var doctorsStage = onSummaryExecutor(() -> timed(QUERY_STAGE,
+        () -> doctorsRepository.findPageWithTotal(pageable, searchQuery, underNotice)))
+        .orTimeout(queryTimeout, MILLISECONDS);
+    return withTraineeCoreInfo(TraineeSummaryDto.builder(),
+        doctorsStage.thenApply(Page::getContent))
+        .thenCombine(doctorsStage, (summaryBuilder, paginatedDoctors) -> withCounts(summaryBuilder
+            .totalPages(paginatedDoctors.getTotalPages())
+            .totalResults(paginatedDoctors.getTotalElements()))
+            .build());
   }
 
+  /**
+   * Write all trainee doctors details to the output as they are read from a database cursor. The
+   * doctors are enriched with TCS information a batch at a time, so memory use does not depend on
+   * the number of doctors.
+   *
+   * @param format       format to write the doctors in
+   * @param underNotice  whether to export only doctors who are under notice
+   * @param outputStream output to write the doctors to
+   */
+  public void exportTraineeDoctorDetails(final ExportFormat format, final boolean underNotice,
+      final OutputStream outputStream) throws IOException {
+    if (format == ExportFormat.CSV) {
+      outputStream.write(CSV_HEADER.getBytes(StandardCharsets.UTF_8));
+      outputStream.write(NEW_LINE);
+    }
+
+    try (Stream<DoctorsForDb> doctors = underNotice
+        ? doctorsRepository.streamByUnderNoticeIn(UNDER_NOTICE)
+        : doctorsRepository.streamAllBy()) {
+      final var batch = new ArrayList<DoctorsForDb>(exportBatchSize);
+      final var iterator = doctors.iterator();
+      while (iterator.hasNext()) {
+        batch.add(iterator.next());
+        if (batch.size() == exportBatchSize || !iterator.hasNext()) {
+          writeBatch(format, batch, outputStream);
+          batch.clear();
+        }
+      }
+    }
+    outputStream.flush();
+  }
+
+  /**
+   * Save a doctor received from GMC, keeping the summary counters and cached data in step.
+   *
+   * @param gmcDoctor doctor to be saved
+   */
   public void updateTrainee(final DoctorsForDbDto gmcDoctor) {
-    final DoctorsForDb doctorsForDb = DoctorsForDb.convert(gmcDoctor);
-    doctorsRepository.save(doctorsForDb);
+    updateTrainees(List.of(gmcDoctor));
+  }
+
+  /**
+   * Save a batch of doctors received from GMC, keeping the summary counters and cached data in
+   * step. Messages identical to the last one applied for a doctor are not read or compared, they
+   * are only written if another consumer has since stored a different sync hash. Of the rest,
+   * only the GMC fields which have changed are written, in a single bulk write, and doctors whose
+   * GMC data is unchanged are not written at all. Every write is conditional on the stored sync
+   * hash differing. When a doctor appears more than once in the batch the last occurrence is
+   * saved.
+   *
+   * @param gmcDoctors doctors to be saved
+   */
+  public void updateTrainees(final List<DoctorsForDbDto> gmcDoctors) {
+    final Map<String, DoctorsForDb> doctors = new LinkedHashMap<>();
+    final Map<String, Long> syncHashes = new HashMap<>();
+    for (final DoctorsForDbDto gmcDoctor : gmcDoctors) {
+      final var doctorsForDb = DoctorsForDb.convert(gmcDoctor);
+      final var gmcNumber = doctorsForDb.getGmcReferenceNumber();
+      doctors.put(gmcNumber, doctorsForDb);
+      syncHashes.put(gmcNumber, GmcSyncHashCache.hash(gmcDoctor));
+    }
+
+    final Map<String, Map<String, Object>> unchangedGmcData = new LinkedHashMap<>();
+    doctors.forEach((gmcNumber, doctor) -> {
+      if (gmcSyncHashCache.isUnchanged(gmcNumber, syncHashes.get(gmcNumber))) {
+        final var gmcData = doctor.gmcChangesFrom(null);
+        gmcData.put("syncHash", syncHashes.get(gmcNumber));
+        unchangedGmcData.put(gmcNumber, gmcData);
+      }
+    });
+    if (!unchangedGmcData.isEmpty()) {
+      doctors.keySet().removeAll(unchangedGmcData.keySet());
+      reapplyUnchangedGmcData(unchangedGmcData);
+    }
+    if (doctors.isEmpty()) {
+      return;
+    }
+
+    final Map<String, DoctorsForDb> storedDoctors = new HashMap<>();
+    doctorsRepository.findAllById(doctors.keySet())
+        .forEach(stored -> storedDoctors.put(stored.getGmcReferenceNumber(), stored));
+
+    final Map<String, Map<String, Object>> changes = new LinkedHashMap<>();
+    doctors.forEach((gmcNumber, doctor) -> {
+      final var doctorChanges = doctor.gmcChangesFrom(storedDoctors.get(gmcNumber));
+      if (!doctorChanges.isEmpty()) {
+        doctorChanges.put("syncHash", syncHashes.get(gmcNumber));
+        changes.put(gmcNumber, doctorChanges);
+      }
+    });
+
+    if (!changes.isEmpty()) {
+      final var result = doctorsRepository.saveGmcChanges(changes);
+      log.debug("Saved changes for {} of {} doctors, {} inserted, {} updated", changes.size(),
+          doctors.size(), result.getUpserts().size(), result.getModifiedCount());
+
+      changes.keySet().forEach(gmcNumber -> {
+        doctorCountService.onDoctorSaved(storedDoctors.get(gmcNumber), doctors.get(gmcNumber));
+        traineeCoreService.evict(gmcNumber);
+      });
+      doctorsSummaryCache.invalidateAll();
+    }
+
+    doctors.keySet().forEach(gmcNumber ->
+        gmcSyncHashCache.remember(gmcNumber, syncHashes.get(gmcNumber)));
+  }
+
+  /**
+   * Apply messages which match the last sync hash this instance saw, writing only the doctors
+   * another consumer has since changed. The summary counters are not adjusted for those, as the
+   * previous state is not read, and are corrected by the next recount.
+   */
+  private void reapplyUnchangedGmcData(final Map<String, Map<String, Object>> unchangedGmcData) {
+    final var result = doctorsRepository.reapplyGmcData(unchangedGmcData);
+    if (result.getModifiedCount() == 0) {
+      log.debug("Skipped {} unchanged GMC sync messages", unchangedGmcData.size());
+      return;
+    }
+
+    log.info("Reapplied {} of {} GMC sync messages over changes from another consumer",
+        result.getModifiedCount(), unchangedGmcData.size());
+    unchangedGmcData.keySet().forEach(traineeCoreService::evict);
+    doctorsSummaryCache.invalidateAll();
   }
 
   private TraineeInfoDto convert(final DoctorsForDb doctorsForDb,
@@ -109,26 +330,171 @@ public class DoctorsForDbService {
 
   }
 
-  private Page<DoctorsForDb> getSortedAndFilteredDoctorsByPageNumber(
+  private void writeBatch(final ExportFormat format, final List<DoctorsForDb> doctors,
+      final OutputStream outputStream) throws IOException {
+    final var traineeCoreInfo = getTraineeCoreInfo(doctors);
+    for (final DoctorsForDb doctor : doctors) {
+      final var traineeInfo = convert(doctor, traineeCoreInfo.get(doctor.getGmcReferenceNumber()));
+      if (format == ExportFormat.CSV) {
+        outputStream.write(toCsvRow(traineeInfo).getBytes(StandardCharsets.UTF_8));
+      } else {
+        outputStream.write(objectMapper.writeValueAsBytes(traineeInfo));
+      }
+      outputStream.write(NEW_LINE);
+    }
+    outputStream.flush();
+  }
+
+  private static String toCsvRow(final TraineeInfoDto traineeInfo) {
+    return Stream.of(traineeInfo.getGmcReferenceNumber(), traineeInfo.getDoctorFirstName(),
+        traineeInfo.getDoctorLastName(), traineeInfo.getSubmissionDate(),
+        traineeInfo.getDateAdded(), traineeInfo.getUnderNotice(), traineeInfo.getSanction(),
+        traineeInfo.getDoctorStatus(), traineeInfo.getProgrammeName(),
+        traineeInfo.getProgrammeMembershipType(), traineeInfo.getCurriculumEndDate(),
+        traineeInfo.getCurrentGrade(), traineeInfo.getLastUpdatedDate())
+        .map(DoctorsForDbService::toCsvValue)
+        .collect(Collectors.joining(","));
+  }
+
+  private static String toCsvValue(final Object value) {
+    if (value == null) {
+      return "";
+    }
+
+    final var text = value.toString();
+    if (text.contains(",") || text.contains("\"") || text.contains("\n")
+        || text.contains("\r")) {
+      return "\"" + text.replace("\"", "\"\"") + "\"";
+    }
+    return text;
+  }
+
+  private CompletableFuture<TraineeSummaryDto> getTraineeDoctorDetailsAfterCursor(
       final TraineeRequestDto requestDto) {
-    final var direction = "asc".equalsIgnoreCase(requestDto.getSortOrder()) ? ASC : DESC;
-    final var pageableAndSortable =
-        of(requestDto.getPageNumber(), pageSize, by(direction, requestDto.getSortColumn()));
-    if (requestDto.isUnderNotice()) {
-      return doctorsRepository
-          .findAllByUnderNoticeIn(pageableAndSortable, requestDto.getSearchQuery(), YES, ON_HOLD);
+    final var order = new Sort.Order(getDirection(requestDto), requestDto.getSortColumn());
+    final var cursor = DoctorsPageCursor.decode(requestDto.getCursor())
+        .filter(c -> c.isFor(order));
+    if (cursor.isEmpty() && !requestDto.getCursor().isBlank()) {
+      log.warn("Invalid cursor provided for sort {}, revert to first page", order);
     }
 
-    return doctorsRepository.findAll(pageableAndSortable, requestDto.getSearchQuery());
+    final var searchQuery = requestDto.getSearchQuery();
+    final var underNotice = getUnderNotice(requestDto);
+    final var doctorsStage = onSummaryExecutor(() -> timed(QUERY_STAGE,
+        () -> doctorsRepository.findPageAfter(order,
+            cursor.map(DoctorsPageCursor::getValue).orElse(null),
+            cursor.map(DoctorsPageCursor::getGmcReferenceNumber).orElse(null),
+            pageSize + 1, searchQuery, underNotice)))
+        .orTimeout(queryTimeout, MILLISECONDS);
+
+    //One extra doctor is read to find out whether there is a next page
+    final var pageStage = doctorsStage
+        .thenApply(doctors -> doctors.subList(0, Math.min(doctors.size(), pageSize)));
+    return withTraineeCoreInfo(TraineeSummaryDto.builder(), pageStage)
+        .thenCombine(doctorsStage, (summaryBuilder, doctors) -> {
+          if (doctors.size() > pageSize) {
+            summaryBuilder.nextCursor(
+                DoctorsPageCursor.after(order, doctors.get(pageSize - 1)).encode());
+          }
+          return withCounts(summaryBuilder).build();
+        });
   }
 
-  //TODO: explore to implement cache
-  private long getCountAll() {
-    return doctorsRepository.count();
+  /**
+   * Add the converted doctors to the summary, enriched with TCS information if it is available
+   * within the timeout. The summary is flagged as degraded when the TCS information is missing
+   * because TCS timed out, failed or its circuit is open. The conversion, and the counts added
+   * after it, run on the summary executor rather than on whichever thread completed the TCS
+   * request, which may be an event loop.
+   */
+  private CompletableFuture<TraineeSummaryDtoBuilder> withTraineeCoreInfo(
+      final TraineeSummaryDtoBuilder summaryBuilder,
+      final CompletableFuture<List<DoctorsForDb>> doctorsStage) {
+    final var coreStage = doctorsStage
+        .thenCompose(doctors -> timedAsync(TCS_STAGE, () -> getTraineeCoreInfoAsync(doctors)))
+        .thenApply(Optional::of)
+        .completeOnTimeout(Optional.empty(), tcsTimeout, MILLISECONDS)
+        .exceptionally(e -> {
+          log.warn("Failed to enrich doctors with TCS information", e);
+          return Optional.empty();
+        });
+
+    return doctorsStage.thenCompose(doctors -> coreStage.thenCompose(coreResult ->
+        onSummaryExecutor(() -> {
+          final var traineeCoreInfo = coreResult.orElse(Map.of());
+          return summaryBuilder
+              .traineeInfo(timed(CONVERSION_STAGE, () -> doctors.stream().map(d ->
+                  convert(d, traineeCoreInfo.get(d.getGmcReferenceNumber()))).collect(toList())))
+              .coreDataDegraded(coreResult.isEmpty() || traineeCoreService.isDegraded());
+        })));
   }
 
-  //TODO: explore to implement cache
-  private long getCountUnderNotice() {
-    return doctorsRepository.countByUnderNoticeIn(YES, ON_HOLD);
+  /**
+   * Run a summary stage on the summary executor. When the executor is saturated the stage fails
+   * with a {@link RejectedExecutionException} rather than running on the calling thread.
+   */
+  private <T> CompletableFuture<T> onSummaryExecutor(final Supplier<T> supplier) {
+    try {
+      return supplyAsync(supplier, doctorsSummaryExecutor);
+    } catch (final RejectedExecutionException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+  }
+
+  private TraineeSummaryDtoBuilder withCounts(final TraineeSummaryDtoBuilder summaryBuilder) {
+    final var sample = Timer.start(meterRegistry);
+    summaryBuilder
+        .countTotal(doctorCountService.getCountAll())
+        .countUnderNotice(doctorCountService.getCountUnderNotice());
+    sample.stop(meterRegistry.timer(SUMMARY_TIMER, STAGE, COUNTS_STAGE));
+    return summaryBuilder;
+  }
+
+  private <T> T timed(final String stage, final Supplier<T> supplier) {
+    return meterRegistry.timer(SUMMARY_TIMER, STAGE, stage).record(supplier);
+  }
+
+  private <T> CompletableFuture<T> timedAsync(final String stage,
+      final Supplier<CompletableFuture<T>> supplier) {
+    final var sample = Timer.start(meterRegistry);
+    return supplier.get().whenComplete((result, error) ->
+        sample.stop(meterRegistry.timer(SUMMARY_TIMER, STAGE, stage)));
+  }
+
+  private Pageable getPageable(final TraineeRequestDto requestDto) {
+    return of(requestDto.getPageNumber(), pageSize,
+        by(getDirection(requestDto), requestDto.getSortColumn()));
+  }
+
+  private Direction getDirection(final TraineeRequestDto requestDto) {
+    return "asc".equalsIgnoreCase(requestDto.getSortOrder()) ? ASC : DESC;
+  }
+
+  private UnderNotice[] getUnderNotice(final TraineeRequestDto requestDto) {
+    return requestDto.isUnderNotice() ? UNDER_NOTICE : ANY_NOTICE;
+  }
+
+  private Map<String, TraineeCoreDto> getTraineeCoreInfo(final List<DoctorsForDb> doctors) {
+    return traineeCoreService.getTraineeInformationFromCore(getGmcIds(doctors));
+  }
+
+  private CompletableFuture<Map<String, TraineeCoreDto>> getTraineeCoreInfoAsync(
+      final List<DoctorsForDb> doctors) {
+    return traineeCoreService.getTraineeInformationFromCoreAsync(getGmcIds(doctors));
+  }
+
+  private static List<String> getGmcIds(final List<DoctorsForDb> doctors) {
+    return doctors.stream().map(DoctorsForDb::getGmcReferenceNumber).collect(toList());
+  }
+
+  private static <T> T join(final CompletableFuture<T> stage) {
+    try {
+      return stage.join();
+    } catch (final CompletionException exception) {
+      if (exception.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) exception.getCause();
+      }
+      throw exception;
+    }
   }
 }
@@ -0,0 +1,125 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2020 Crown Copyright (Health Education England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.core.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.Objects;
+import java.util.Optional;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.data.domain.Sort;
+import uk.nhs.hee.tis.revalidation.core.entity.DoctorsForDb;
+
+/**
+ * Position of the last doctor returned by a cursor paged request, passed to clients as an opaque
+ * continuation token.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+class DoctorsPageCursor {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private String sortColumn;
+  private Sort.Direction sortOrder;
+  private String value;
+  private String gmcReferenceNumber;
+
+  /**
+   * Create the cursor positioned on the given doctor.
+   *
+   * @param order  the sort column and direction of the page
+   * @param doctor the last doctor on the page
+   */
+  static DoctorsPageCursor after(final Sort.Order order, final DoctorsForDb doctor) {
+    final var value = new BeanWrapperImpl(doctor).getPropertyValue(order.getProperty());
+    return new DoctorsPageCursor(order.getProperty(), order.getDirection(),
+        Objects.toString(value, null), doctor.getGmcReferenceNumber());
+  }
+
+  /**
+   * Read a cursor from a continuation token.
+   *
+   * @param token the continuation token
+   * @return the cursor, or empty if the token is blank or not valid
+   */
+  static Optional<DoctorsPageCursor> decode(final String token) {
+    if (token == null || token.isBlank()) {
+      return Optional.empty();
+    }
+
+    try {
+      final var cursor = MAPPER.readValue(Base64.getUrlDecoder().decode(token),
+          DoctorsPageCursor.class);
+      return Optional.ofNullable(cursor).filter(c -> c.getGmcReferenceNumber() != null);
+    } catch (final IllegalArgumentException | IOException e) {
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Write the cursor as a continuation token.
+   */
+  String encode() {
+    try {
+      return Base64.getUrlEncoder().withoutPadding().encodeToString(MAPPER.writeValueAsBytes(this));
+    } catch (final IOException e) {
+      throw new IllegalStateException("Unable to encode doctors page cursor", e);
+    }
+  }
+
+  /**
+   * Whether the cursor was created for a page with the given sort column and direction, and holds
+   * a sort value that can be read as that column's type.
+   *
+   * @param order the sort column and direction of the requested page
+   */
+  boolean isFor(final Sort.Order order) {
+    return order.getProperty().equals(sortColumn) && order.getDirection() == sortOrder
+        && isValidValue();
+  }
+
+  /**
+   * Check a date sort value parses, the token comes from the client so may have been altered.
+   */
+  private boolean isValidValue() {
+    final var property = BeanUtils.getPropertyDescriptor(DoctorsForDb.class, sortColumn);
+    if (value == null || property == null || property.getPropertyType() != LocalDate.class) {
+      return true;
+    }
+
+    try {
+      LocalDate.parse(value);
+      return true;
+    } catch (final DateTimeParseException e) {
+      return false;
+    }
+  }
+}
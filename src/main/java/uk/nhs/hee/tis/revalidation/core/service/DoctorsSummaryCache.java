@@ -0,0 +1,118 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2020 Crown Copyright (Health Education England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.core.service;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import uk.nhs.hee.tis.revalidation.core.dto.TraineeRequestDto;
+import uk.nhs.hee.tis.revalidation.core.dto.TraineeSummaryDto;
+
+/**
+ * Short-lived cache of the doctors summary by request, so repeated views of the same page, most
+ * often the default view, are served from memory. Summaries missing TCS information are not
+ * cached, and the whole cache is invalidated whenever doctors are saved.
+ */
+@Component
+public class DoctorsSummaryCache {
+
+  public static final String DOCTORS_SUMMARY_CACHE = "doctorsSummary";
+
+  private final Cache<TraineeRequestDto, TraineeSummaryDto> cache;
+  private final AtomicLong generation = new AtomicLong();
+
+  /**
+   * Create the cache, publishing its hit and miss statistics.
+   *
+   * @param meterRegistry registry to publish the cache statistics to
+   * @param ttl           how long a summary is cached for, in milliseconds
+   * @param maxSize       the maximum number of summaries cached
+   */
+  public DoctorsSummaryCache(final MeterRegistry meterRegistry,
+      @Value("${app.reval.summary.cache.ttl}") final long ttl,
+      @Value("${app.reval.summary.cache.maxSize}") final long maxSize) {
+    final Cache<TraineeRequestDto, TraineeSummaryDto> summaries = Caffeine.newBuilder()
+        .expireAfterWrite(ttl, MILLISECONDS)
+        .maximumSize(maxSize)
+        .recordStats()
+        .build();
+    cache = CaffeineCacheMetrics.monitor(meterRegistry, summaries, DOCTORS_SUMMARY_CACHE);
+  }
+
+  /**
+   * Get the cached summary for the request, or load and cache it. A summary loaded while the
+   * cache was invalidated is returned but not cached, as it may already be out of date.
+   *
+   * @param requestDto the sort, page and search request
+   * @param loader     function loading the summary for the request
+   * @return a future of the summary
+   */
+  public CompletableFuture<TraineeSummaryDto> getOrLoad(final TraineeRequestDto requestDto,
+      final Function<TraineeRequestDto, CompletableFuture<TraineeSummaryDto>> loader) {
+    final var key = normalise(requestDto);
+    final var cached = cache.getIfPresent(key);
+    if (cached != null) {
+      return CompletableFuture.completedFuture(cached);
+    }
+
+    final var loadGeneration = generation.get();
+    return loader.apply(requestDto).thenApply(summary -> {
+      if (!summary.isCoreDataDegraded() && generation.get() == loadGeneration) {
+        cache.put(key, summary);
+      }
+      return summary;
+    });
+  }
+
+  /**
+   * Remove every cached summary, as a change to any doctor may affect any page and the counts.
+   */
+  public void invalidateAll() {
+    generation.incrementAndGet();
+    cache.invalidateAll();
+  }
+
+  /**
+   * Build the cache key for a request, treating requests which return the same summary alike.
+   */
+  private static TraineeRequestDto normalise(final TraineeRequestDto requestDto) {
+    final var cursor = requestDto.getCursor();
+    return TraineeRequestDto.builder()
+        .sortColumn(requestDto.getSortColumn())
+        .sortOrder(requestDto.getSortOrder() == null
+            ? null : requestDto.getSortOrder().toLowerCase(Locale.ROOT))
+        .underNotice(requestDto.isUnderNotice())
+        .pageNumber(cursor == null ? requestDto.getPageNumber() : 0)
+        .searchQuery(requestDto.getSearchQuery() == null ? "" : requestDto.getSearchQuery())
+        .cursor(cursor)
+        .build();
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2020 Crown Copyright (Health Education England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.core.service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import uk.nhs.hee.tis.revalidation.core.dto.DoctorsForDbDto;
+import uk.nhs.hee.tis.revalidation.core.repository.DoctorsForDbRepository;
+
+/**
+ * The hash of the last GMC sync message applied for each doctor by this instance, so repeated
+ * snapshots of an unchanged doctor can skip reading and comparing the stored doctor.
+ *
+ * <p>The hashes are held per service instance and miss anything written by other consumers, so a
+ * match is never enough to drop a message. The write is still made, conditional on the sync hash
+ * stored with the doctor differing, and matches nothing when the doctor is unchanged.
+ */
+@Slf4j
+@Component
+public class GmcSyncHashCache {
+
+  private static final String SEPARATOR = "\u001f";
+  private static final String NULL_VALUE = "\u0000";
+
+  private final Map<String, Long> hashes = new ConcurrentHashMap<>();
+
+  @Autowired
+  private DoctorsForDbRepository doctorsRepository;
+
+  /**
+   * Load the hashes stored with the doctors, any hash already recorded since startup is kept.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void rebuild() {
+    try {
+      doctorsRepository.findAllSyncHashes(hashes::putIfAbsent);
+      log.info("Loaded GMC sync hashes for {} doctors", hashes.size());
+    } catch (final RuntimeException e) {
+      log.error("Failed to load GMC sync hashes, all messages will be checked against the "
+          + "database", e);
+    }
+  }
+
+  /**
+   * Calculate a stable hash of the GMC data in a sync message.
+   *
+   * @param gmcDoctor the doctor received from GMC
+   */
+  public static long hash(final DoctorsForDbDto gmcDoctor) {
+    final var content = Stream.of(gmcDoctor.getGmcReferenceNumber(),
+        gmcDoctor.getDoctorFirstName(), gmcDoctor.getDoctorLastName(),
+        gmcDoctor.getSubmissionDate(), gmcDoctor.getDateAdded(), gmcDoctor.getUnderNotice(),
+        gmcDoctor.getSanction(), gmcDoctor.getDesignatedBodyCode())
+        .map(value -> Objects.toString(value, NULL_VALUE))
+        .collect(Collectors.joining(SEPARATOR));
+
+    try {
+      final var digest = MessageDigest.getInstance("SHA-256")
+          .digest(content.getBytes(StandardCharsets.UTF_8));
+      return ByteBuffer.wrap(digest).getLong();
+    } catch (final NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+  }
+
+  /**
+   * Whether the given hash matches the last sync message applied for the doctor.
+   *
+   * @param gmcNumber the GMC number of the doctor
+   * @param hash      the hash of the received sync message
+   */
+  public boolean isUnchanged(final String gmcNumber, final long hash) {
+    final var lastHash = hashes.get(gmcNumber);
+    return lastHash != null && lastHash == hash;
+  }
+
+  /**
+   * Record the hash of a sync message once it has been applied.
+   *
+   * @param gmcNumber the GMC number of the doctor
+   * @param hash      the hash of the applied sync message
+   */
+  public void remember(final String gmcNumber, final long hash) {
+    hashes.put(gmcNumber, hash);
+  }
+}
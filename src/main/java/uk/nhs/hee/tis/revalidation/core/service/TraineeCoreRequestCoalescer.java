@@ -0,0 +1,183 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2020 Crown Copyright (Health Education England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.core.service;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import uk.nhs.hee.tis.revalidation.core.dto.TraineeCoreDto;
+
+/**
+ * Gathers GMC ids requested by concurrent callers over a short window and loads them from TCS in
+ * bounded-size batches, sharing any lookup that is already in flight. Batches are loaded
+ * asynchronously, with no thread waiting on TCS, and once the maximum number of batches are in
+ * flight any further batches are queued until one completes.
+ */
+@Slf4j
+public class TraineeCoreRequestCoalescer {
+
+  private final Function<List<String>, CompletableFuture<Map<String, TraineeCoreDto>>> batchLoader;
+  private final long windowMillis;
+  private final int maxBatchSize;
+  private final ScheduledExecutorService flushScheduler;
+  private final Semaphore batchPermits;
+
+  private final Map<String, CompletableFuture<TraineeCoreDto>> inFlight =
+      new ConcurrentHashMap<>();
+  private final Queue<String> pending = new ConcurrentLinkedQueue<>();
+  private final Queue<List<String>> waitingBatches = new ConcurrentLinkedQueue<>();
+  private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+  /**
+   * Create a coalescer for the given batch loader.
+   *
+   * @param batchLoader          function asynchronously loading a batch of GMC ids from TCS
+   * @param windowMillis         how long to gather ids before sending a batch
+   * @param maxBatchSize         maximum number of ids sent to TCS in one request
+   * @param maxConcurrentBatches maximum number of batches loaded at the same time
+   */
+  public TraineeCoreRequestCoalescer(
+      final Function<List<String>, CompletableFuture<Map<String, TraineeCoreDto>>> batchLoader,
+      final long windowMillis, final int maxBatchSize, final int maxConcurrentBatches) {
+    this.batchLoader = batchLoader;
+    this.windowMillis = windowMillis;
+    this.maxBatchSize = maxBatchSize;
+    this.flushScheduler =
+        Executors.newSingleThreadScheduledExecutor(threadFactory("tcs-coalescer-"));
+    this.batchPermits = new Semaphore(maxConcurrentBatches);
+  }
+
+  /**
+   * Request the core information for the given GMC ids.
+   *
+   * @param gmcIds the GMC ids to load
+   * @return a future per distinct GMC id, completed with null when TCS has no data for it
+   */
+  public Map<String, CompletableFuture<TraineeCoreDto>> load(final Collection<String> gmcIds) {
+    final Map<String, CompletableFuture<TraineeCoreDto>> futures = new LinkedHashMap<>();
+    for (final String gmcId : gmcIds) {
+      futures.computeIfAbsent(gmcId, id -> inFlight.computeIfAbsent(id, key -> {
+        pending.add(key);
+        return new CompletableFuture<>();
+      }));
+    }
+
+    if (!pending.isEmpty() && flushScheduled.compareAndSet(false, true)) {
+      flushScheduler.schedule(this::flush, windowMillis, MILLISECONDS);
+    }
+    return futures;
+  }
+
+  /**
+   * Stop gathering batches and release the scheduler thread.
+   */
+  public void shutdown() {
+    flushScheduler.shutdownNow();
+  }
+
+  private void flush() {
+    flushScheduled.set(false);
+
+    var batch = new ArrayList<String>(maxBatchSize);
+    String gmcId;
+    while ((gmcId = pending.poll()) != null) {
+      batch.add(gmcId);
+      if (batch.size() == maxBatchSize) {
+        dispatch(batch);
+        batch = new ArrayList<>(maxBatchSize);
+      }
+    }
+
+    if (!batch.isEmpty()) {
+      dispatch(batch);
+    }
+  }
+
+  private void dispatch(final List<String> batch) {
+    waitingBatches.add(batch);
+    startWaitingBatches();
+  }
+
+  private void startWaitingBatches() {
+    while (!waitingBatches.isEmpty() && batchPermits.tryAcquire()) {
+      final var batch = waitingBatches.poll();
+      if (batch == null) {
+        batchPermits.release();
+        return;
+      }
+      start(batch);
+    }
+  }
+
+  private void start(final List<String> batch) {
+    log.debug("Loading batch of {} GMC ids from TCS", batch.size());
+    CompletableFuture<Map<String, TraineeCoreDto>> batchStage;
+    try {
+      batchStage = batchLoader.apply(batch);
+    } catch (final RuntimeException exception) {
+      batchStage = CompletableFuture.failedFuture(exception);
+    }
+
+    batchStage.whenComplete((result, error) -> {
+      batchPermits.release();
+      batch.forEach(id -> complete(id, result, error));
+      startWaitingBatches();
+    });
+  }
+
+  private void complete(final String gmcId, final Map<String, TraineeCoreDto> result,
+      final Throwable error) {
+    final var future = inFlight.remove(gmcId);
+    if (future == null) {
+      return;
+    }
+
+    if (error != null) {
+      future.completeExceptionally(
+          error instanceof CompletionException ? error.getCause() : error);
+    } else {
+      future.complete(result == null ? null : result.get(gmcId));
+    }
+  }
+
+  private static CustomizableThreadFactory threadFactory(final String threadNamePrefix) {
+    final var threadFactory = new CustomizableThreadFactory(threadNamePrefix);
+    threadFactory.setDaemon(true);
+    return threadFactory;
+  }
+}
@@ -22,53 +22,251 @@
 package uk.nhs.hee.tis.revalidation.core.service;
 
 import static java.lang.String.format;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.stream.Collectors.joining;
-import static org.springframework.http.HttpMethod.GET;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker.State;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.metrics.http.Outcome;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpStatus.Series;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.HttpStatusCodeException;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
 import uk.nhs.hee.tis.revalidation.core.dto.TraineeCoreDto;
 
 @Slf4j
 @Service
 public class TraineeCoreService {
 
+  private static final String TCS_TIMER = "reval.tcs.requests";
+  private static final String OUTCOME = "outcome";
+  private static final ParameterizedTypeReference<Map<String, TraineeCoreDto>> TRAINEE_CORE_MAP =
+      new ParameterizedTypeReference<>() {
+      };
+
+  @Autowired
+  private WebClient tcsWebClient;
+
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  @Autowired
+  private CircuitBreaker tcsCircuitBreaker;
+
   @Autowired
-  private RestTemplate restTemplate;
+  private Cache<String, Optional<TraineeCoreDto>> traineeCoreCache;
 
   @Value("${app.reval.tcs.url}")
   private String tcsUrl;
 
+  @Value("${app.reval.tcs.batch.window}")
+  private long batchWindow;
+
+  @Value("${app.reval.tcs.batch.maxSize}")
+  private int batchMaxSize;
+
+  @Value("${app.reval.tcs.batch.maxConcurrent}")
+  private int batchMaxConcurrent;
+
+  @Value("${app.reval.tcs.timeout}")
+  private long timeout;
+
+  @Value("${app.reval.tcs.retry.maxRetries}")
+  private long retryMaxRetries;
+
+  @Value("${app.reval.tcs.retry.minBackoff}")
+  private long retryMinBackoff;
+
+  @Value("${app.reval.tcs.retry.jitter}")
+  private double retryJitter;
+
+  private TraineeCoreRequestCoalescer coalescer;
+
+  /**
+   * Create the coalescer used to batch concurrent requests to TCS.
+   */
+  @PostConstruct
+  public void initialise() {
+    coalescer = new TraineeCoreRequestCoalescer(this::fetchFromTcs, batchWindow, batchMaxSize,
+        batchMaxConcurrent);
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    coalescer.shutdown();
+  }
+
+  /**
+   * Get trainee core information, from the cache where possible and otherwise from TCS, sharing
+   * batched requests with concurrent callers. While TCS is degraded only the cached information
+   * is returned, without waiting for TCS.
+   *
+   * @param gmcIds the GMC ids to get core information for
+   * @return the core information found, keyed by GMC id
+   */
   public Map<String, TraineeCoreDto> getTraineeInformationFromCore(final List<String> gmcIds) {
-    log.info("Fetching trainee core info from TCS for GmcId: {}", gmcIds);
-    if (!gmcIds.isEmpty()) {
-      final var gmcId = gmcIds.stream().collect(joining(","));
-      final var requestUrl = format("%s/%s", tcsUrl, gmcId);
-      log.debug("Tcs url to fetch core information: {}", requestUrl);
-      Map<String, TraineeCoreDto> traineeCoreDtos = Map.of();
-      try {
-        traineeCoreDtos = restTemplate
-            .exchange(requestUrl, GET, null,
-                new ParameterizedTypeReference<Map<String, TraineeCoreDto>>() {
-                }).getBody();
-
-      } catch (final HttpStatusCodeException exception) {
-        final var statusCode = exception.getStatusCode().value();
-        log.error("Fail to connect to TCS service. Status code: {}", statusCode, exception);
-      } catch (final Exception e) {
-        log.error("Fail to connect to TCS service", e);
-      }
+    return getTraineeInformationFromCoreAsync(gmcIds).join();
+  }
+
+  /**
+   * Get trainee core information without blocking the calling thread. The returned future
+   * completes once every GMC id not in the cache has been loaded from TCS, or the timeout has
+   * passed, with whatever information was found; it does not complete exceptionally when TCS
+   * fails.
+   *
+   * @param gmcIds the GMC ids to get core information for
+   * @return a future of the core information found, keyed by GMC id
+   */
+  public CompletableFuture<Map<String, TraineeCoreDto>> getTraineeInformationFromCoreAsync(
+      final List<String> gmcIds) {
+    if (gmcIds.isEmpty()) {
+      return CompletableFuture.completedFuture(Map.of());
+    }
+
+    final Map<String, TraineeCoreDto> traineeCoreDtos = new HashMap<>();
+    final var cached = traineeCoreCache.getAllPresent(gmcIds);
+    cached.forEach((gmcId, traineeCoreDto) ->
+        traineeCoreDto.ifPresent(dto -> traineeCoreDtos.put(gmcId, dto)));
 
-      return traineeCoreDtos;
+    if (isDegraded()) {
+      log.info("TCS circuit is open, using cached trainee core info for GmcId: {}", gmcIds);
+      return CompletableFuture.completedFuture(traineeCoreDtos);
     }
 
-    return Map.of();
+    final List<String> missingGmcIds = new ArrayList<>();
+    gmcIds.stream().filter(gmcId -> !cached.containsKey(gmcId)).forEach(missingGmcIds::add);
+    if (missingGmcIds.isEmpty()) {
+      return CompletableFuture.completedFuture(traineeCoreDtos);
+    }
+
+    log.info("Fetching trainee core info from TCS for GmcId: {}", missingGmcIds);
+    final var futures = coalescer.load(missingGmcIds);
+    return CompletableFuture.allOf(futures.values().toArray(CompletableFuture[]::new))
+        .thenApply(ignored -> true)
+        .completeOnTimeout(false, timeout, MILLISECONDS)
+        .handle((completed, error) -> {
+          if (error != null) {
+            logFailure(error instanceof CompletionException ? error.getCause() : error);
+          } else if (!completed) {
+            log.error("Timed out waiting for TCS service after {}ms", timeout);
+          }
+          addLoaded(futures, traineeCoreDtos);
+          return traineeCoreDtos;
+        });
+  }
+
+  /**
+   * Whether TCS is currently treated as unavailable, because its circuit breaker is open.
+   *
+   * @return true if requests to TCS are not being made
+   */
+  public boolean isDegraded() {
+    final var state = tcsCircuitBreaker.getState();
+    return state == State.OPEN || state == State.FORCED_OPEN;
+  }
+
+  /**
+   * Remove any cached core information for a trainee, so the next request goes to TCS.
+   *
+   * @param gmcId the GMC id of the trainee that changed
+   */
+  public void evict(final String gmcId) {
+    traineeCoreCache.invalidate(gmcId);
+  }
+
+  /**
+   * Add the GMC ids loaded from TCS to the result and the cache. Ids which TCS does not know are
+   * cached as empty, so they are negatively cached, while ids which failed or have not yet loaded
+   * are not cached at all.
+   */
+  private void addLoaded(final Map<String, CompletableFuture<TraineeCoreDto>> futures,
+      final Map<String, TraineeCoreDto> traineeCoreDtos) {
+    futures.forEach((gmcId, future) -> {
+      if (future.isDone() && !future.isCompletedExceptionally()) {
+        final var traineeCoreDto = Optional.ofNullable(future.join());
+        traineeCoreCache.put(gmcId, traineeCoreDto);
+        traineeCoreDto.ifPresent(dto -> traineeCoreDtos.put(gmcId, dto));
+      }
+    });
+  }
+
+  /**
+   * Load a batch of GMC ids from TCS, retrying server errors with a jittered exponential backoff.
+   * The retries happen within a single call through the circuit breaker.
+   */
+  private CompletableFuture<Map<String, TraineeCoreDto>> fetchFromTcs(final List<String> gmcIds) {
+    final var gmcId = gmcIds.stream().collect(joining(","));
+    final var requestUrl = format("%s/%s", tcsUrl, gmcId);
+    log.debug("Tcs url to fetch core information: {}", requestUrl);
+
+    return exchange(requestUrl)
+        .retryWhen(Retry.backoff(retryMaxRetries, Duration.ofMillis(retryMinBackoff))
+            .jitter(retryJitter)
+            .filter(TraineeCoreService::isServerError)
+            .doBeforeRetry(signal -> log.warn("Retrying TCS request after server error: {}",
+                signal.failure().getMessage()))
+            .onRetryExhaustedThrow((spec, signal) -> signal.failure()))
+        .transformDeferred(CircuitBreakerOperator.of(tcsCircuitBreaker))
+        .toFuture();
+  }
+
+  private Mono<Map<String, TraineeCoreDto>> exchange(final String requestUrl) {
+    return Mono.defer(() -> {
+      final var sample = Timer.start(meterRegistry);
+      return tcsWebClient.get()
+          .uri(requestUrl)
+          .retrieve()
+          .bodyToMono(TRAINEE_CORE_MAP)
+          .doOnSuccess(body -> record(sample, Outcome.SUCCESS))
+          .doOnError(error -> record(sample, outcome(error)))
+          .doOnCancel(() -> record(sample, Outcome.UNKNOWN));
+    });
+  }
+
+  private void record(final Timer.Sample sample, final Outcome outcome) {
+    sample.stop(meterRegistry.timer(TCS_TIMER, OUTCOME, outcome.name()));
+  }
+
+  private static Outcome outcome(final Throwable error) {
+    return error instanceof WebClientResponseException
+        ? Outcome.forStatus(((WebClientResponseException) error).getRawStatusCode())
+        : Outcome.UNKNOWN;
+  }
+
+  private static boolean isServerError(final Throwable error) {
+    return error instanceof WebClientResponseException && Series.resolve(
+        ((WebClientResponseException) error).getRawStatusCode()) == Series.SERVER_ERROR;
+  }
+
+  private void logFailure(final Throwable cause) {
+    if (cause instanceof CallNotPermittedException) {
+      log.warn("TCS circuit is open, request to TCS not made");
+    } else if (cause instanceof WebClientResponseException) {
+      final var statusCode = ((WebClientResponseException) cause).getRawStatusCode();
+      log.error("Fail to connect to TCS service. Status code: {}", statusCode, cause);
+    } else {
+      log.error("Fail to connect to TCS service", cause);
+    }
   }
 }
@@ -23,7 +23,10 @@ package uk.nhs.hee.tis.revalidation.core.service;
 
 import static java.time.LocalDateTime.now;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Supplier;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -38,9 +41,17 @@ import uk.nhs.hee.tis.revalidation.core.repository.TraineeNotesRepository;
 @Service
 public class TraineeNotesService {
 
+  private static final String NOTES_TIMER = "reval.notes";
+  private static final String OPERATION = "operation";
+  private static final String READ = "read";
+  private static final String WRITE = "write";
+
   @Autowired
   private TraineeNotesRepository traineeNotesRepository;
 
+  @Autowired
+  private MeterRegistry meterRegistry;
+
   /**
    * Get trainee notes details.
    *
@@ -48,7 +59,8 @@ public class TraineeNotesService {
    */
   public TraineeNotesDto getTraineeNotes(final String gmcId) {
     log.info("Retrieving trainee notes for gmcId: {}", gmcId);
-    final var notes = traineeNotesRepository.findAllByGmcIdOrderByCreatedDateDesc(gmcId);
+    final List<TraineeNote> notes =
+        timed(READ, () -> traineeNotesRepository.findAllByGmcIdOrderByCreatedDateDesc(gmcId));
     return TraineeNotesDto.builder()
         .gmcId(gmcId)
         .notes(notes)
@@ -62,7 +74,7 @@ public class TraineeNotesService {
    */
   public Optional<TraineeNote> getTraineeNotesByNoteId(final String id) {
     log.info("Retrieving trainee notes for note Id: {}", id);
-    return traineeNotesRepository.findById(id);
+    return timed(READ, () -> traineeNotesRepository.findById(id));
   }
 
   /**
@@ -79,7 +91,7 @@ public class TraineeNotesService {
         .updatedDate(now())
         .build();
 
-    return traineeNotesRepository.save(traineeNote);
+    return timed(WRITE, () -> traineeNotesRepository.save(traineeNote));
   }
 
   /**
@@ -102,10 +114,14 @@ public class TraineeNotesService {
           .updatedDate(now())
           .build();
 
-      return traineeNotesRepository.save(traineeNote);
+      return timed(WRITE, () -> traineeNotesRepository.save(traineeNote));
     }
     else {
       return saveTraineeNote(traineeNoteDto);
     }
   }
+
+  private <T> T timed(final String operation, final Supplier<T> supplier) {
+    return meterRegistry.timer(NOTES_TIMER, OPERATION, operation).record(supplier);
+  }
 }
@@ -0,0 +1,172 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2020 Crown Copyright (Health Education England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.core.cognito;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.javafaker.Faker;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An in-process stand-in for Cognito serving a synthetic admin group, paged in the same way as
+ * the real ListUsersInGroup operation.
+ */
+public class FakeCognitoServer implements AutoCloseable {
+
+  private static final String CONTENT_TYPE = "application/x-amz-json-1.1";
+  private static final String LIST_USERS_IN_GROUP =
+      "AWSCognitoIdentityProviderService.ListUsersInGroup";
+  private static final int DEFAULT_PAGE_SIZE = 60;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final List<ObjectNode> users;
+  private final AtomicInteger requestCount = new AtomicInteger();
+  private final HttpServer server;
+  private final ExecutorService executor;
+
+  /**
+   * Start a server on a free local port with a group of generated users.
+   *
+   * @param userCount the number of users in the group
+   * @param seed      the seed for the generated users, so runs are repeatable
+   * @throws IOException if the server could not be started
+   */
+  public FakeCognitoServer(final int userCount, final long seed) throws IOException {
+    users = generateUsers(userCount, seed);
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    executor = Executors.newCachedThreadPool();
+    server.setExecutor(executor);
+    server.createContext("/", this::handle);
+    server.start();
+  }
+
+  public URI getEndpoint() {
+    return URI.create("http://localhost:" + server.getAddress().getPort());
+  }
+
+  public int getUserCount() {
+    return users.size();
+  }
+
+  public int getRequestCount() {
+    return requestCount.get();
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  private void handle(final HttpExchange exchange) throws IOException {
+    requestCount.incrementAndGet();
+
+    try (InputStream body = exchange.getRequestBody()) {
+      final String target = exchange.getRequestHeaders().getFirst("X-Amz-Target");
+      if (!LIST_USERS_IN_GROUP.equals(target)) {
+        respond(exchange, 400, error("UnknownOperationException", target));
+        return;
+      }
+
+      final JsonNode request = objectMapper.readTree(body);
+      final int pageSize = request.path("Limit").asInt(DEFAULT_PAGE_SIZE);
+      final int from = request.hasNonNull("NextToken")
+          ? Integer.parseInt(request.get("NextToken").asText()) : 0;
+      final int to = Math.min(from + pageSize, users.size());
+
+      final ObjectNode response = objectMapper.createObjectNode();
+      response.putArray("Users").addAll(users.subList(from, to));
+      if (to < users.size()) {
+        response.put("NextToken", String.valueOf(to));
+      }
+      respond(exchange, 200, response);
+    } finally {
+      exchange.close();
+    }
+  }
+
+  private void respond(final HttpExchange exchange, final int status, final JsonNode body)
+      throws IOException {
+    final byte[] bytes = objectMapper.writeValueAsBytes(body);
+    exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+    exchange.sendResponseHeaders(status, bytes.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(bytes);
+    }
+  }
+
+  private ObjectNode error(final String type, final String message) {
+    final ObjectNode error = objectMapper.createObjectNode();
+    error.put("__type", type);
+    error.put("message", String.valueOf(message));
+    return error;
+  }
+
+  private List<ObjectNode> generateUsers(final int userCount, final long seed) {
+    final Faker faker = new Faker(Locale.UK, new Random(seed));
+    final List<ObjectNode> generated = new ArrayList<>(userCount);
+
+    for (int i = 0; i < userCount; i++) {
+      final String givenName = faker.name().firstName();
+      final String familyName = faker.name().lastName();
+
+      final ObjectNode user = objectMapper.createObjectNode();
+      user.put("Username", faker.internet().uuid());
+      user.put("Enabled", true);
+      user.put("UserStatus", "CONFIRMED");
+
+      final ArrayNode attributes = user.putArray("Attributes");
+      attributes.add(attribute("sub", faker.internet().uuid()));
+      attributes.add(attribute("given_name", givenName));
+      attributes.add(attribute("family_name", familyName));
+      attributes.add(attribute("email",
+          String.format("%s.%s%d@tis.nhs.uk", givenName, familyName, i)
+              .toLowerCase(Locale.UK)));
+      generated.add(user);
+    }
+    return generated;
+  }
+
+  private ObjectNode attribute(final String name, final String value) {
+    final ObjectNode attribute = objectMapper.createObjectNode();
+    attribute.put("Name", name);
+    attribute.put("Value", value);
+    return attribute;
+  }
+}
@@ -23,13 +23,23 @@ package uk.nhs.hee.tis.revalidation.core.controller;
 
 import static java.time.LocalDate.now;
 import static java.util.List.of;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.CompletableFuture.failedFuture;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.when;
+import static org.springframework.http.HttpHeaders.CONTENT_DISPOSITION;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static uk.nhs.hee.tis.revalidation.core.controller.DoctorsForDbController.ASC;
 import static uk.nhs.hee.tis.revalidation.core.controller.DoctorsForDbController.DESC;
 import static uk.nhs.hee.tis.revalidation.core.controller.DoctorsForDbController.EMPTY_STRING;
+import static uk.nhs.hee.tis.revalidation.core.controller.DoctorsForDbController.FORMAT;
 import static uk.nhs.hee.tis.revalidation.core.controller.DoctorsForDbController.PAGE_NUMBER;
 import static uk.nhs.hee.tis.revalidation.core.controller.DoctorsForDbController.PAGE_NUMBER_VALUE;
 import static uk.nhs.hee.tis.revalidation.core.controller.DoctorsForDbController.SEARCH_QUERY;
@@ -41,16 +51,19 @@ import static uk.nhs.hee.tis.revalidation.core.controller.DoctorsForDbController
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.javafaker.Faker;
+import java.io.OutputStream;
 import java.time.LocalDate;
 import java.util.List;
-import org.junit.Before;
-import org.junit.Test;
-import org.junit.runner.RunWith;
+import java.util.concurrent.RejectedExecutionException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
-import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import uk.nhs.hee.tis.revalidation.core.dto.ExportFormat;
 import uk.nhs.hee.tis.revalidation.core.dto.TraineeInfoDto;
 import uk.nhs.hee.tis.revalidation.core.dto.TraineeRequestDto;
 import uk.nhs.hee.tis.revalidation.core.dto.TraineeSummaryDto;
@@ -58,9 +71,8 @@ import uk.nhs.hee.tis.revalidation.core.entity.RecommendationStatus;
 import uk.nhs.hee.tis.revalidation.core.entity.UnderNotice;
 import uk.nhs.hee.tis.revalidation.core.service.DoctorsForDbService;
 
-@RunWith(SpringRunner.class)
 @WebMvcTest(DoctorsForDbController.class)
-public class DoctorsForDbControllerTest {
+class DoctorsForDbControllerTest {
 
   private static final String DOCTORS_API_URL = "/api/doctors";
   private final Faker faker = new Faker();
@@ -94,8 +106,8 @@ public class DoctorsForDbControllerTest {
   /**
    * Set up data for testing.
    */
-  @Before
-  public void setup() {
+  @BeforeEach
+  void setup() {
     gmcRef1 = faker.number().digits(8);
     gmcRef2 = faker.number().digits(8);
     firstName1 = faker.name().firstName();
@@ -115,12 +127,13 @@ public class DoctorsForDbControllerTest {
   }
 
   @Test
-  public void shouldReturnTraineeDoctorsInformation() throws Exception {
+  void shouldReturnTraineeDoctorsInformation() throws Exception {
     final var gmcDoctorDto = prepareGmcDoctor();
     final var requestDto = TraineeRequestDto.builder().sortOrder(ASC).sortColumn(SUBMISSION_DATE)
         .searchQuery(EMPTY_STRING).build();
-    when(doctorsForDbService.getAllTraineeDoctorDetails(requestDto)).thenReturn(gmcDoctorDto);
-    this.mockMvc.perform(get(DOCTORS_API_URL)
+    when(doctorsForDbService.getAllTraineeDoctorDetailsAsync(requestDto))
+        .thenReturn(completedFuture(gmcDoctorDto));
+    performAsync(get(DOCTORS_API_URL)
         .param(SORT_ORDER, ASC)
         .param(SORT_COLUMN, SUBMISSION_DATE)
         .param(UNDER_NOTICE, UNDER_NOTICE_VALUE)
@@ -131,12 +144,13 @@ public class DoctorsForDbControllerTest {
   }
 
   @Test
-  public void shouldReturnDataWhenSortOrderAndSortColumnAreEmpty() throws Exception {
+  void shouldReturnDataWhenSortOrderAndSortColumnAreEmpty() throws Exception {
     final var gmcDoctorDto = prepareGmcDoctor();
     final var requestDto = TraineeRequestDto.builder().sortOrder(DESC).sortColumn(SUBMISSION_DATE)
         .searchQuery(EMPTY_STRING).build();
-    when(doctorsForDbService.getAllTraineeDoctorDetails(requestDto)).thenReturn(gmcDoctorDto);
-    this.mockMvc.perform(get(DOCTORS_API_URL)
+    when(doctorsForDbService.getAllTraineeDoctorDetailsAsync(requestDto))
+        .thenReturn(completedFuture(gmcDoctorDto));
+    performAsync(get(DOCTORS_API_URL)
         .param(SORT_ORDER, "")
         .param(SORT_COLUMN, ""))
         .andExpect(status().isOk())
@@ -144,12 +158,13 @@ public class DoctorsForDbControllerTest {
   }
 
   @Test
-  public void shouldReturnDataWhenSortOrderAndSortColumnAreInvalid() throws Exception {
+  void shouldReturnDataWhenSortOrderAndSortColumnAreInvalid() throws Exception {
     final var gmcDoctorDto = prepareGmcDoctor();
     final var requestDto = TraineeRequestDto.builder().sortOrder(DESC).sortColumn(SUBMISSION_DATE)
         .searchQuery(EMPTY_STRING).build();
-    when(doctorsForDbService.getAllTraineeDoctorDetails(requestDto)).thenReturn(gmcDoctorDto);
-    this.mockMvc.perform(get(DOCTORS_API_URL)
+    when(doctorsForDbService.getAllTraineeDoctorDetailsAsync(requestDto))
+        .thenReturn(completedFuture(gmcDoctorDto));
+    performAsync(get(DOCTORS_API_URL)
         .param(SORT_ORDER, "aa")
         .param(SORT_COLUMN, "date"))
         .andExpect(status().isOk())
@@ -157,13 +172,14 @@ public class DoctorsForDbControllerTest {
   }
 
   @Test
-  public void shouldReturnUnderNoticeTraineeDoctorsInformation() throws Exception {
+  void shouldReturnUnderNoticeTraineeDoctorsInformation() throws Exception {
     final var gmcDoctorDto = prepareGmcDoctor();
     final var requestDto = TraineeRequestDto.builder()
         .sortOrder(ASC).sortColumn(SUBMISSION_DATE).underNotice(true).searchQuery(EMPTY_STRING)
         .build();
-    when(doctorsForDbService.getAllTraineeDoctorDetails(requestDto)).thenReturn(gmcDoctorDto);
-    this.mockMvc.perform(get(DOCTORS_API_URL)
+    when(doctorsForDbService.getAllTraineeDoctorDetailsAsync(requestDto))
+        .thenReturn(completedFuture(gmcDoctorDto));
+    performAsync(get(DOCTORS_API_URL)
         .param(SORT_ORDER, ASC)
         .param(SORT_COLUMN, SUBMISSION_DATE)
         .param(UNDER_NOTICE, String.valueOf(true)))
@@ -171,6 +187,45 @@ public class DoctorsForDbControllerTest {
         .andExpect(content().json(mapper.writeValueAsString(gmcDoctorDto)));
   }
 
+  @Test
+  void shouldReturnServiceUnavailableWhenSummaryRejected() throws Exception {
+    final var requestDto = TraineeRequestDto.builder().sortOrder(DESC).sortColumn(SUBMISSION_DATE)
+        .searchQuery(EMPTY_STRING).build();
+    when(doctorsForDbService.getAllTraineeDoctorDetailsAsync(requestDto))
+        .thenReturn(failedFuture(new RejectedExecutionException("Saturated")));
+    performAsync(get(DOCTORS_API_URL))
+        .andExpect(status().isServiceUnavailable());
+  }
+
+  @Test
+  void shouldStreamTraineeDoctorsExport() throws Exception {
+    doAnswer(invocation -> {
+      invocation.getArgument(2, OutputStream.class).write("gmcReferenceNumber\n".getBytes());
+      return null;
+    }).when(doctorsForDbService)
+        .exportTraineeDoctorDetails(eq(ExportFormat.CSV), eq(true), any(OutputStream.class));
+
+    final var result = this.mockMvc.perform(get(DOCTORS_API_URL + "/export")
+        .param(FORMAT, "csv")
+        .param(UNDER_NOTICE, "true"))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+
+    this.mockMvc.perform(asyncDispatch(result))
+        .andExpect(status().isOk())
+        .andExpect(content().contentType("text/csv"))
+        .andExpect(header().string(CONTENT_DISPOSITION, "attachment; filename=\"doctors.csv\""))
+        .andExpect(content().string("gmcReferenceNumber\n"));
+  }
+
+  private ResultActions performAsync(final MockHttpServletRequestBuilder requestBuilder)
+      throws Exception {
+    final var result = this.mockMvc.perform(requestBuilder)
+        .andExpect(request().asyncStarted())
+        .andReturn();
+    return this.mockMvc.perform(asyncDispatch(result));
+  }
+
   private TraineeSummaryDto prepareGmcDoctor() {
     final var doctorsForDb = buildDoctorsForDbList();
     return TraineeSummaryDto.builder()
@@ -0,0 +1,107 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2020 Crown Copyright (Health Education England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.core.load;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Records operation latencies from any number of threads and summarises them as percentiles.
+ */
+public final class LatencyRecorder {
+
+  private final long[] samples;
+  private final AtomicInteger count = new AtomicInteger();
+
+  /**
+   * Create a recorder.
+   *
+   * @param capacity the maximum number of latencies to record
+   */
+  public LatencyRecorder(final int capacity) {
+    samples = new long[capacity];
+  }
+
+  /**
+   * Record the latency of an operation which started at the given time.
+   *
+   * @param startNanos the {@link System#nanoTime()} when the operation started
+   */
+  public void recordSince(final long startNanos) {
+    samples[count.getAndIncrement()] = System.nanoTime() - startNanos;
+  }
+
+  /**
+   * Summarise the recorded latencies, only call once all recording threads have finished.
+   *
+   * @param elapsedNanos the wall clock time taken by all the operations
+   * @return the latency summary
+   */
+  public Summary summarise(final long elapsedNanos) {
+    final long[] sorted = Arrays.copyOf(samples, count.get());
+    Arrays.sort(sorted);
+    return new Summary(sorted, elapsedNanos);
+  }
+
+  /**
+   * Percentile latencies and throughput of the recorded operations.
+   */
+  public static final class Summary {
+
+    private final long[] sortedNanos;
+    private final long elapsedNanos;
+
+    private Summary(final long[] sortedNanos, final long elapsedNanos) {
+      this.sortedNanos = sortedNanos;
+      this.elapsedNanos = elapsedNanos;
+    }
+
+    public int getCount() {
+      return sortedNanos.length;
+    }
+
+    public double getPercentileMillis(final double percentile) {
+      final int index = (int) Math.ceil(percentile * sortedNanos.length) - 1;
+      return toMillis(sortedNanos[Math.max(index, 0)]);
+    }
+
+    public double getMaxMillis() {
+      return toMillis(sortedNanos[sortedNanos.length - 1]);
+    }
+
+    public double getThroughput() {
+      return sortedNanos.length / (elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1));
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%d operations, p50 %.2f ms, p99 %.2f ms, max %.2f ms, %.1f ops/s",
+          getCount(), getPercentileMillis(0.50), getPercentileMillis(0.99), getMaxMillis(),
+          getThroughput());
+    }
+
+    private static double toMillis(final long nanos) {
+      return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2020 Crown Copyright (Health Education England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.core.messages;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.AmqpConnectException;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.amqp.ImmediateRequeueAmqpException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import uk.nhs.hee.tis.revalidation.core.dto.DoctorsForDbDto;
+import uk.nhs.hee.tis.revalidation.core.service.DoctorsForDbService;
+
+@ExtendWith(MockitoExtension.class)
+class GmcSyncBatchRecovererTest {
+
+  private static final String ERROR_EXCHANGE = "ex.error";
+  private static final String ERROR_ROUTING_KEY = "reval.gmcsync.dlq";
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  @Mock
+  private DoctorsForDbService doctorsForDbService;
+
+  @Mock
+  private RabbitTemplate rabbitTemplate;
+
+  private GmcSyncBatchRecoverer recoverer;
+
+  @BeforeEach
+  void setUp() {
+    recoverer = new GmcSyncBatchRecoverer(doctorsForDbService,
+        new Jackson2JsonMessageConverter(new ObjectMapper().findAndRegisterModules()),
+        rabbitTemplate, meterRegistry, ERROR_EXCHANGE, ERROR_ROUTING_KEY);
+  }
+
+  @Test
+  void shouldSaveDoctorsIndividuallyAndDeadLetterOnlyFailures() {
+    final var good = doctor("1234567");
+    final var bad = doctor("7654321");
+    doThrow(new IllegalStateException("Bad doctor")).when(doctorsForDbService)
+        .updateTrainees(List.of(bad));
+
+    assertThrows(AmqpRejectAndDontRequeueException.class, () -> recoverer.recover(
+        List.of(message(bad), message(good)), new IllegalStateException("Bad doctor")));
+
+    verify(doctorsForDbService).updateTrainees(List.of(good));
+    verify(rabbitTemplate, times(1)).send(eq(ERROR_EXCHANGE), eq(ERROR_ROUTING_KEY),
+        argThat(message -> new String(message.getBody(), StandardCharsets.UTF_8)
+            .contains("7654321")));
+    assertThat("Unexpected dead letter count.",
+        meterRegistry.counter("reval.gmcsync.deadletters").count(), is(1.0));
+  }
+
+  @Test
+  void shouldDeadLetterMalformedMessages() {
+    final var malformed = new Message("{not json".getBytes(StandardCharsets.UTF_8),
+        jsonProperties());
+
+    assertThrows(AmqpRejectAndDontRequeueException.class,
+        () -> recoverer.recover(List.of(malformed), new IllegalStateException("Malformed")));
+
+    verify(rabbitTemplate).send(eq(ERROR_EXCHANGE), eq(ERROR_ROUTING_KEY), any(Message.class));
+    assertThat("Unexpected dead letter count.",
+        meterRegistry.counter("reval.gmcsync.deadletters").count(), is(1.0));
+  }
+
+  @Test
+  void shouldAcknowledgeBatchWhenAllDoctorsSavedIndividually() {
+    final var good = doctor("1234567");
+
+    recoverer.recover(List.of(message(good)), new IllegalStateException("Timeout"));
+
+    verify(doctorsForDbService).updateTrainees(List.of(good));
+    verify(rabbitTemplate, never()).send(any(), any(), any(Message.class));
+  }
+
+  @Test
+  void shouldRequeueBatchWhenDeadLetterPublishFails() {
+    final var bad = doctor("7654321");
+    doThrow(new IllegalStateException("Bad doctor")).when(doctorsForDbService)
+        .updateTrainees(List.of(bad));
+    doThrow(new AmqpConnectException(new IllegalStateException("Broker down")))
+        .when(rabbitTemplate).send(eq(ERROR_EXCHANGE), eq(ERROR_ROUTING_KEY), any(Message.class));
+
+    assertThrows(ImmediateRequeueAmqpException.class, () -> recoverer.recover(
+        List.of(message(bad)), new IllegalStateException("Bad doctor")));
+    assertThat("Unexpected dead letter count.",
+        meterRegistry.counter("reval.gmcsync.deadletters").count(), is(0.0));
+  }
+
+  private DoctorsForDbDto doctor(final String gmcNumber) {
+    return DoctorsForDbDto.builder().gmcReferenceNumber(gmcNumber).underNotice("No").build();
+  }
+
+  private Message message(final DoctorsForDbDto doctor) {
+    final var body = String.format("{\"gmcReferenceNumber\":\"%s\",\"underNotice\":\"%s\"}",
+        doctor.getGmcReferenceNumber(), doctor.getUnderNotice());
+    return new Message(body.getBytes(StandardCharsets.UTF_8), jsonProperties());
+  }
+
+  private MessageProperties jsonProperties() {
+    final var properties = new MessageProperties();
+    properties.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+    return properties;
+  }
+}
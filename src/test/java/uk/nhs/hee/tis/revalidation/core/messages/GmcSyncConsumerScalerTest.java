@@ -0,0 +1,113 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2020 Crown Copyright (Health Education England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.core.messages;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+import uk.nhs.hee.tis.revalidation.core.config.RabbitConfig;
+
+@ExtendWith(MockitoExtension.class)
+class GmcSyncConsumerScalerTest {
+
+  private static final String QUEUE = "reval.queue.gmcsync.recommendation";
+
+  @InjectMocks
+  private GmcSyncConsumerScaler scaler;
+
+  @Mock
+  private AmqpAdmin amqpAdmin;
+
+  @Mock
+  private RabbitListenerEndpointRegistry listenerEndpointRegistry;
+
+  @BeforeEach
+  void setUp() {
+    ReflectionTestUtils.setField(scaler, "queueName", QUEUE);
+    ReflectionTestUtils.setField(scaler, "minConsumers", 1);
+    ReflectionTestUtils.setField(scaler, "maxConsumers", 8);
+    ReflectionTestUtils.setField(scaler, "messagesPerConsumer", 1000);
+  }
+
+  @Test
+  void shouldKeepMinimumConsumersWhenQueueEmpty() {
+    assertThat("Unexpected consumers.", scaler.getTargetConsumers(0), is(1));
+  }
+
+  @Test
+  void shouldAddConsumerPerBlockOfMessages() {
+    assertThat("Unexpected consumers.", scaler.getTargetConsumers(2500), is(3));
+  }
+
+  @Test
+  void shouldNotExceedMaximumConsumers() {
+    assertThat("Unexpected consumers.", scaler.getTargetConsumers(1_000_000), is(8));
+  }
+
+  @Test
+  void shouldScaleContainerOnlyWhenTargetChanges() {
+    final var container = container(true);
+    when(listenerEndpointRegistry.getListenerContainer(RabbitConfig.GMC_SYNC_LISTENER_ID))
+        .thenReturn(container);
+    when(amqpAdmin.getQueueInfo(QUEUE)).thenReturn(new QueueInformation(QUEUE, 4000, 1));
+
+    scaler.scaleConsumers();
+    scaler.scaleConsumers();
+
+    verify(container, times(1)).setConcurrentConsumers(4);
+  }
+
+  @Test
+  void shouldNotScaleWhenContainerStopped() {
+    final var container = container(false);
+    when(listenerEndpointRegistry.getListenerContainer(RabbitConfig.GMC_SYNC_LISTENER_ID))
+        .thenReturn(container);
+
+    scaler.scaleConsumers();
+
+    verify(container, never()).setConcurrentConsumers(anyInt());
+  }
+
+  //isRunning() is final so can not be stubbed, spy a real container in the wanted state instead
+  private SimpleMessageListenerContainer container(final boolean running) {
+    final var container = new SimpleMessageListenerContainer();
+    ReflectionTestUtils.setField(container, "running", running);
+    return spy(container);
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2020 Crown Copyright (Health Education England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.core.monitoring;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import com.mongodb.ServerAddress;
+import com.mongodb.connection.ClusterId;
+import com.mongodb.connection.ConnectionDescription;
+import com.mongodb.connection.ServerId;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class SlowMongoCommandListenerTest {
+
+  private static final ConnectionDescription CONNECTION =
+      new ConnectionDescription(new ServerId(new ClusterId(), new ServerAddress()));
+
+  private SlowMongoCommandListener listener;
+
+  @BeforeEach
+  void setUp() {
+    listener = new SlowMongoCommandListener();
+    ReflectionTestUtils.setField(listener, "thresholdMillis", 100L);
+    ReflectionTestUtils.setField(listener, "maxEntries", 2);
+  }
+
+  @Test
+  void shouldCaptureRedactedShapeOfSlowCommand() {
+    final var command = BsonDocument.parse("{find: 'doctorsForDb', "
+        + "filter: {normalisedLastName: {$regex: '^smith'},"
+        + " underNotice: {$in: ['YES', 'ON_HOLD']}},"
+        + " sort: {submissionDate: -1}, limit: 20, lsid: {id: 1}, $db: 'revalidation'}");
+
+    run(1, "find", command, 150);
+
+    final var slowCommands = listener.getSlowCommands();
+    assertThat("Unexpected number of slow commands.", slowCommands.size(), is(1));
+
+    final var slowCommand = slowCommands.get(0);
+    assertThat("Unexpected collection.", slowCommand.getCollection(), is("doctorsForDb"));
+    assertThat("Unexpected command.", slowCommand.getCommand(), is("find"));
+    assertThat("Unexpected duration.", slowCommand.getDurationMillis(), is(150L));
+    assertThat("Unexpected shape.", BsonDocument.parse(slowCommand.getShape()),
+        is(BsonDocument.parse("{find: 'doctorsForDb', "
+            + "filter: {normalisedLastName: {$regex: '?'}, underNotice: {$in: '?'}},"
+            + " sort: {submissionDate: '?'}, limit: '?'}")));
+    assertThat("Value not redacted.", slowCommand.getShape(), not(containsString("smith")));
+  }
+
+  @Test
+  void shouldKeepCommandAfterDriverReleasesIt() {
+    final var command = BsonDocument.parse("{count: 'doctorsForDb', query: {underNotice: 'YES'}}");
+
+    listener.commandStarted(
+        new CommandStartedEvent(1, CONNECTION, "revalidation", "count", command));
+    command.clear();
+    listener.commandSucceeded(new CommandSucceededEvent(1, CONNECTION, "count",
+        new BsonDocument(), MILLISECONDS.toNanos(150)));
+
+    final var slowCommand = listener.getSlowCommands().get(0);
+    assertThat("Unexpected collection.", slowCommand.getCollection(), is("doctorsForDb"));
+    assertThat("Unexpected shape.", BsonDocument.parse(slowCommand.getShape()),
+        is(BsonDocument.parse("{count: 'doctorsForDb', query: {underNotice: '?'}}")));
+  }
+
+  @Test
+  void shouldIgnoreCommandsFasterThanThreshold() {
+    run(1, "find", BsonDocument.parse("{find: 'doctorsForDb', filter: {}}"), 50);
+
+    assertThat("Unexpected slow commands.", listener.getSlowCommands().size(), is(0));
+  }
+
+  @Test
+  void shouldKeepOnlyMostRecentSlowCommands() {
+    run(1, "count", BsonDocument.parse("{count: 'first'}"), 200);
+    run(2, "count", BsonDocument.parse("{count: 'second'}"), 200);
+    run(3, "count", BsonDocument.parse("{count: 'third'}"), 200);
+
+    final var slowCommands = listener.getSlowCommands();
+    assertThat("Unexpected number of slow commands.", slowCommands.size(), is(2));
+    assertThat("Unexpected collection.", slowCommands.get(0).getCollection(), is("third"));
+    assertThat("Unexpected collection.", slowCommands.get(1).getCollection(), is("second"));
+  }
+
+  private void run(final int requestId, final String commandName, final BsonDocument command,
+      final long durationMillis) {
+    listener.commandStarted(
+        new CommandStartedEvent(requestId, CONNECTION, "revalidation", commandName, command));
+    listener.commandSucceeded(new CommandSucceededEvent(requestId, CONNECTION, commandName,
+        new BsonDocument(), MILLISECONDS.toNanos(durationMillis)));
+  }
+}
@@ -0,0 +1,193 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2020 Crown Copyright (Health Education England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.core.repository;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.data.domain.Sort.Direction.ASC;
+import static org.springframework.data.domain.Sort.Direction.DESC;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import uk.nhs.hee.tis.revalidation.core.entity.DoctorsForDb;
+
+@ExtendWith(MockitoExtension.class)
+class DoctorsForDbRepositoryImplTest {
+
+  private static final String GMC_NUMBER = "gmcReferenceNumber";
+  private static final String LAST_GMC_NUMBER = "12345678";
+
+  @Mock
+  private MongoTemplate mongoTemplate;
+
+  @Mock
+  private BulkOperations bulkOperations;
+
+  private DoctorsForDbRepositoryImpl repository;
+
+  @BeforeEach
+  void setUp() {
+    repository = new DoctorsForDbRepositoryImpl(mongoTemplate, SearchMode.PREFIX);
+  }
+
+  @Test
+  void shouldMatchNonNullValuesAfterNullValueWhenAscending() {
+    repository.findPageAfter(new Sort.Order(ASC, "doctorLastName"), null, LAST_GMC_NUMBER, 3, "");
+
+    final var expected = new Document("$or", List.of(
+        new Document("doctorLastName", new Document("$ne", null)),
+        and(new Document("doctorLastName", null),
+            new Document(GMC_NUMBER, new Document("$gt", LAST_GMC_NUMBER)))));
+    assertThat("Unexpected keyset criteria.", capturedQuery().getQueryObject(),
+        is(and(expected)));
+  }
+
+  @Test
+  void shouldMatchOnlyNullValuesAfterNullValueWhenDescending() {
+    repository.findPageAfter(new Sort.Order(DESC, "doctorLastName"), null, LAST_GMC_NUMBER, 3,
+        "");
+
+    final var expected = and(new Document("doctorLastName", null),
+        new Document(GMC_NUMBER, new Document("$lt", LAST_GMC_NUMBER)));
+    assertThat("Unexpected keyset criteria.", capturedQuery().getQueryObject(),
+        is(and(expected)));
+  }
+
+  @Test
+  void shouldConvertDateValueWhenAscending() {
+    when(mongoTemplate.getConverter()).thenReturn(
+        new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, new MongoMappingContext()));
+    final var submissionDate = LocalDate.of(2021, 3, 14);
+
+    repository.findPageAfter(new Sort.Order(ASC, "submissionDate"), submissionDate.toString(),
+        LAST_GMC_NUMBER, 3, "");
+
+    final var expected = new Document("$or", List.of(
+        new Document("submissionDate", new Document("$gt", submissionDate)),
+        and(new Document("submissionDate", submissionDate),
+            new Document(GMC_NUMBER, new Document("$gt", LAST_GMC_NUMBER)))));
+    assertThat("Unexpected keyset criteria.", capturedQuery().getQueryObject(),
+        is(and(expected)));
+  }
+
+  @Test
+  void shouldFindUnfilteredPageWithoutAggregating() {
+    when(mongoTemplate.getCollectionName(DoctorsForDb.class)).thenReturn("doctorsForDb");
+    when(mongoTemplate.estimatedCount("doctorsForDb")).thenReturn(45L);
+    final var pageable = PageRequest.of(2, 20, Sort.by(DESC, "submissionDate"));
+
+    final var page = repository.findPageWithTotal(pageable, "");
+
+    assertThat("Unexpected total.", page.getTotalElements(), is(45L));
+    final var query = capturedQuery();
+    assertThat("Unexpected criteria.", query.getQueryObject().isEmpty(), is(true));
+    assertThat("Unexpected skip.", query.getSkip(), is(40L));
+    assertThat("Unexpected limit.", query.getLimit(), is(20));
+    verify(mongoTemplate, never()).aggregate(any(TypedAggregation.class), eq(Document.class));
+  }
+
+  @Test
+  void shouldOnlyUpsertDoctorsStoredWithDifferentSyncHash() {
+    when(mongoTemplate.bulkOps(BulkMode.UNORDERED, DoctorsForDb.class))
+        .thenReturn(bulkOperations);
+
+    repository.saveGmcChanges(Map.of(LAST_GMC_NUMBER, Map.of("syncHash", 42L)));
+
+    final var captor = ArgumentCaptor.forClass(Query.class);
+    verify(bulkOperations).upsert(captor.capture(), any(Update.class));
+    assertThat("Unexpected upsert filter.", captor.getValue().getQueryObject(),
+        is(new Document(GMC_NUMBER, LAST_GMC_NUMBER)
+            .append("syncHash", new Document("$ne", 42L))));
+  }
+
+  @Test
+  void shouldIgnoreDuplicateKeyFromDoctorAlreadyAtSyncHash() {
+    when(mongoTemplate.bulkOps(BulkMode.UNORDERED, DoctorsForDb.class))
+        .thenReturn(bulkOperations);
+    final var result = BulkWriteResult.acknowledged(0, 0, 0, 0, List.of(), List.of());
+    when(bulkOperations.execute()).thenThrow(bulkOperationException(result, 11000));
+
+    final var saved = repository.saveGmcChanges(Map.of(LAST_GMC_NUMBER, Map.of("syncHash", 42L)));
+
+    assertThat("Unexpected result.", saved, is(result));
+  }
+
+  @Test
+  void shouldRethrowOtherBulkWriteErrors() {
+    when(mongoTemplate.bulkOps(BulkMode.UNORDERED, DoctorsForDb.class))
+        .thenReturn(bulkOperations);
+    final var result = BulkWriteResult.acknowledged(0, 0, 0, 0, List.of(), List.of());
+    when(bulkOperations.execute()).thenThrow(bulkOperationException(result, 121));
+    final Map<String, Map<String, Object>> changes =
+        Map.of(LAST_GMC_NUMBER, Map.of("syncHash", 42L));
+
+    assertThrows(BulkOperationException.class, () -> repository.saveGmcChanges(changes));
+  }
+
+  private Query capturedQuery() {
+    final var captor = ArgumentCaptor.forClass(Query.class);
+    verify(mongoTemplate).find(captor.capture(), eq(DoctorsForDb.class));
+    return captor.getValue();
+  }
+
+  private static BulkOperationException bulkOperationException(final BulkWriteResult result,
+      final int code) {
+    return new BulkOperationException("Bulk write failed", new MongoBulkWriteException(result,
+        List.of(new BulkWriteError(code, "Write failed", new BsonDocument(), 0)), null,
+        new ServerAddress()));
+  }
+
+  private static Document and(final Document... criteria) {
+    return new Document("$and", List.of(criteria));
+  }
+}
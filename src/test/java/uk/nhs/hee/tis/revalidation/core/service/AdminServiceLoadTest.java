@@ -0,0 +1,139 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2020 Crown Copyright (Health Education England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.core.service;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.cognitoidentityprovider.CognitoIdentityProviderClient;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.ListUsersInGroupRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.UserType;
+import uk.nhs.hee.tis.revalidation.core.cognito.FakeCognitoServer;
+import uk.nhs.hee.tis.revalidation.core.dto.AdminDto;
+import uk.nhs.hee.tis.revalidation.core.load.LatencyRecorder;
+import uk.nhs.hee.tis.revalidation.core.mapper.AdminMapperImpl;
+import uk.nhs.hee.tis.revalidation.core.mapper.util.AdminUtil;
+
+/**
+ * Measures how long the admin directory takes to fetch and map against a fake Cognito group.
+ */
+@Tag("load")
+class AdminServiceLoadTest {
+
+  private static final Logger log = LoggerFactory.getLogger(AdminServiceLoadTest.class);
+
+  private static final int USER_COUNT = 5000;
+  private static final int WARMUP_ITERATIONS = 5;
+  private static final int ITERATIONS = 20;
+
+  private static FakeCognitoServer server;
+  private static CognitoIdentityProviderClient client;
+  private static AdminMapperImpl mapper;
+
+  @BeforeAll
+  static void setUpAll() throws Exception {
+    server = new FakeCognitoServer(USER_COUNT, 42L);
+    client = CognitoIdentityProviderClient.builder()
+        .endpointOverride(server.getEndpoint())
+        .region(Region.EU_WEST_2)
+        .credentialsProvider(
+            StaticCredentialsProvider.create(AwsBasicCredentials.create("fake", "fake")))
+        .build();
+
+    mapper = new AdminMapperImpl();
+    ReflectionTestUtils.setField(mapper, "adminUtil", new AdminUtil());
+  }
+
+  @AfterAll
+  static void tearDownAll() {
+    client.close();
+    server.close();
+  }
+
+  @Test
+  void shouldFetchWholeDirectory() {
+    final var stats = measure(() -> {
+      final List<AdminDto> admins = coldAdminService().getAssignableAdmins();
+      assertThat("Unexpected number of admins.", admins.size(), is(USER_COUNT));
+    });
+
+    log.info("Fetched {} admins: {}", USER_COUNT, stats);
+  }
+
+  @Test
+  void shouldMapWholeDirectory() {
+    final List<UserType> users = new ArrayList<>(USER_COUNT);
+    client.listUsersInGroupPaginator(ListUsersInGroupRequest.builder()
+            .groupName("admins")
+            .userPoolId("pool")
+            .build())
+        .users()
+        .forEach(users::add);
+
+    final var stats = measure(() -> {
+      final List<AdminDto> admins = mapper.toDtos(users);
+      assertThat("Unexpected number of admins.", admins.size(), is(USER_COUNT));
+    });
+
+    log.info("Mapped {} admins: {}", USER_COUNT, stats);
+  }
+
+  /**
+   * Create an admin service with an empty cache, so each call goes to the fake Cognito.
+   */
+  private static AdminService coldAdminService() {
+    final var service = new AdminService(client, mapper, new SimpleMeterRegistry(),
+        Duration.ofMinutes(5));
+    ReflectionTestUtils.setField(service, "adminGroup", "admins");
+    ReflectionTestUtils.setField(service, "adminUserPool", "pool");
+    return service;
+  }
+
+  private static LatencyRecorder.Summary measure(final Runnable task) {
+    for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+      task.run();
+    }
+
+    final var recorder = new LatencyRecorder(ITERATIONS);
+    final long start = System.nanoTime();
+    for (int i = 0; i < ITERATIONS; i++) {
+      final long iterationStart = System.nanoTime();
+      task.run();
+      recorder.recordSince(iterationStart);
+    }
+    return recorder.summarise(System.nanoTime() - start);
+  }
+}
@@ -22,16 +22,22 @@
 package uk.nhs.hee.tis.revalidation.core.service;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.lang.reflect.Field;
+import java.time.Duration;
 import java.util.Collections;
 import java.util.List;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.util.ReflectionUtils;
@@ -59,7 +65,8 @@ class AdminServiceTest {
     field.setAccessible(true);
     ReflectionUtils.setField(field, mapper, new AdminUtil());
 
-    service = new AdminService(cognitoIdentityProviderClient, mapper);
+    service = new AdminService(cognitoIdentityProviderClient, mapper, new SimpleMeterRegistry(),
+        Duration.ofMinutes(5));
   }
 
   @Test
@@ -111,6 +118,56 @@ class AdminServiceTest {
     assertThat("Unexpected email.", admin.getEmail(), is("user2@tis.nhs.uk"));
   }
 
+  @Test
+  void shouldReturnAdminsFromEveryPageWhenAssignableAdminsPaginated() {
+    // Given.
+    ListUsersInGroupResponse firstPage = ListUsersInGroupResponse.builder()
+        .users(List.of(buildUser(1), buildUser(2)))
+        .nextToken("page2")
+        .build();
+    ListUsersInGroupResponse secondPage = ListUsersInGroupResponse.builder()
+        .users(List.of(buildUser(3)))
+        .build();
+
+    when(cognitoIdentityProviderClient.listUsersInGroup(
+        any(ListUsersInGroupRequest.class))).thenReturn(firstPage, secondPage);
+
+    // When.
+    List<AdminDto> admins = service.getAssignableAdmins();
+
+    // Then.
+    assertThat("Unexpected number of admins.", admins.size(), is(3));
+    assertThat("Unexpected username.", admins.get(2).getUsername(), is("username3"));
+
+    ArgumentCaptor<ListUsersInGroupRequest> requestCaptor =
+        ArgumentCaptor.forClass(ListUsersInGroupRequest.class);
+    verify(cognitoIdentityProviderClient, times(2)).listUsersInGroup(requestCaptor.capture());
+    List<ListUsersInGroupRequest> requests = requestCaptor.getAllValues();
+    assertThat("Unexpected first token.", requests.get(0).nextToken(), nullValue());
+    assertThat("Unexpected second token.", requests.get(1).nextToken(), is("page2"));
+  }
+
+  @Test
+  void shouldReturnCachedAdminsWhenRequestedAgainWithinTtl() {
+    // Given.
+    ListUsersInGroupResponse listUsersInGroupResponse = ListUsersInGroupResponse.builder()
+        .users(List.of(buildUser(1)))
+        .build();
+
+    when(cognitoIdentityProviderClient.listUsersInGroup(
+        any(ListUsersInGroupRequest.class))).thenReturn(
+        listUsersInGroupResponse);
+
+    // When.
+    List<AdminDto> first = service.getAssignableAdmins();
+    List<AdminDto> second = service.getAssignableAdmins();
+
+    // Then.
+    assertThat("Unexpected admins.", second, is(first));
+    verify(cognitoIdentityProviderClient, times(1))
+        .listUsersInGroup(any(ListUsersInGroupRequest.class));
+  }
+
   private UserType buildUser(int id) {
     return UserType.builder()
         .username(String.format("username%d", id))
@@ -0,0 +1,128 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2020 Crown Copyright (Health Education England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.core.service;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static uk.nhs.hee.tis.revalidation.core.entity.UnderNotice.NO;
+import static uk.nhs.hee.tis.revalidation.core.entity.UnderNotice.ON_HOLD;
+import static uk.nhs.hee.tis.revalidation.core.entity.UnderNotice.YES;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import uk.nhs.hee.tis.revalidation.core.entity.DoctorsForDb;
+import uk.nhs.hee.tis.revalidation.core.entity.UnderNotice;
+import uk.nhs.hee.tis.revalidation.core.repository.DoctorsForDbRepository;
+
+@ExtendWith(MockitoExtension.class)
+class DoctorCountServiceTest {
+
+  @InjectMocks
+  private DoctorCountService doctorCountService;
+
+  @Mock
+  private DoctorsForDbRepository repository;
+
+  @BeforeEach
+  void setUp() {
+    when(repository.count()).thenReturn(5L);
+    when(repository.countByUnderNoticeIn(YES, ON_HOLD)).thenReturn(2L);
+  }
+
+  @Test
+  void shouldSeedCountersOnlyOnce() {
+    assertThat("Unexpected total count.", doctorCountService.getCountAll(), is(5L));
+    assertThat("Unexpected under notice count.", doctorCountService.getCountUnderNotice(),
+        is(2L));
+    assertThat("Unexpected total count.", doctorCountService.getCountAll(), is(5L));
+
+    verify(repository, times(1)).count();
+    verify(repository, times(1)).countByUnderNoticeIn(YES, ON_HOLD);
+  }
+
+  @Test
+  void shouldIncrementCountersWhenNewDoctorUnderNoticeSaved() {
+    doctorCountService.recount();
+
+    doctorCountService.onDoctorSaved(null, doctor(YES));
+
+    assertThat("Unexpected total count.", doctorCountService.getCountAll(), is(6L));
+    assertThat("Unexpected under notice count.", doctorCountService.getCountUnderNotice(),
+        is(3L));
+  }
+
+  @Test
+  void shouldOnlyIncrementTotalWhenNewDoctorNotUnderNoticeSaved() {
+    doctorCountService.recount();
+
+    doctorCountService.onDoctorSaved(null, doctor(NO));
+
+    assertThat("Unexpected total count.", doctorCountService.getCountAll(), is(6L));
+    assertThat("Unexpected under notice count.", doctorCountService.getCountUnderNotice(),
+        is(2L));
+  }
+
+  @Test
+  void shouldDecrementUnderNoticeWhenExistingDoctorLeavesNotice() {
+    doctorCountService.recount();
+
+    doctorCountService.onDoctorSaved(doctor(ON_HOLD), doctor(NO));
+
+    assertThat("Unexpected total count.", doctorCountService.getCountAll(), is(5L));
+    assertThat("Unexpected under notice count.", doctorCountService.getCountUnderNotice(),
+        is(1L));
+  }
+
+  @Test
+  void shouldNotChangeCountersWhenUnderNoticeStatusUnchanged() {
+    doctorCountService.recount();
+
+    doctorCountService.onDoctorSaved(doctor(YES), doctor(ON_HOLD));
+
+    assertThat("Unexpected total count.", doctorCountService.getCountAll(), is(5L));
+    assertThat("Unexpected under notice count.", doctorCountService.getCountUnderNotice(),
+        is(2L));
+  }
+
+  @Test
+  void shouldCorrectDriftWhenRecounted() {
+    doctorCountService.recount();
+    doctorCountService.onDoctorSaved(null, doctor(YES));
+
+    doctorCountService.recount();
+
+    assertThat("Unexpected total count.", doctorCountService.getCountAll(), is(5L));
+    assertThat("Unexpected under notice count.", doctorCountService.getCountUnderNotice(),
+        is(2L));
+  }
+
+  private DoctorsForDb doctor(final UnderNotice underNotice) {
+    return DoctorsForDb.builder().underNotice(underNotice).build();
+  }
+}
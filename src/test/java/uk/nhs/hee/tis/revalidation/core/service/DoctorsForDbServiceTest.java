@@ -23,40 +23,73 @@ package uk.nhs.hee.tis.revalidation.core.service;
 
 import static java.time.LocalDate.now;
 import static java.util.List.of;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
-import static org.junit.Assert.assertThat;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.data.domain.Sort.Direction.ASC;
 import static org.springframework.data.domain.Sort.Direction.DESC;
 import static org.springframework.data.domain.Sort.by;
 import static uk.nhs.hee.tis.revalidation.core.entity.UnderNotice.ON_HOLD;
 import static uk.nhs.hee.tis.revalidation.core.entity.UnderNotice.YES;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.javafaker.Faker;
+import com.mongodb.bulk.BulkWriteResult;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.stream.Stream;
-import org.junit.Before;
-import org.junit.Test;
-import org.junit.runner.RunWith;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
-import org.mockito.junit.MockitoJUnitRunner;
+import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.test.util.ReflectionTestUtils;
+import uk.nhs.hee.tis.revalidation.core.dto.DoctorsForDbDto;
+import uk.nhs.hee.tis.revalidation.core.dto.ExportFormat;
 import uk.nhs.hee.tis.revalidation.core.dto.TraineeCoreDto;
+import uk.nhs.hee.tis.revalidation.core.dto.TraineeInfoDto;
 import uk.nhs.hee.tis.revalidation.core.dto.TraineeRequestDto;
 import uk.nhs.hee.tis.revalidation.core.entity.DoctorsForDb;
 import uk.nhs.hee.tis.revalidation.core.entity.RecommendationStatus;
 import uk.nhs.hee.tis.revalidation.core.entity.UnderNotice;
 import uk.nhs.hee.tis.revalidation.core.repository.DoctorsForDbRepository;
 
-@RunWith(MockitoJUnitRunner.class)
-public class DoctorsForDbServiceTest {
+@ExtendWith(MockitoExtension.class)
+class DoctorsForDbServiceTest {
 
   private final Faker faker = new Faker();
+  private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+  private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
 
   @InjectMocks
   private DoctorsForDbService doctorsForDbService;
@@ -67,6 +100,18 @@ public class DoctorsForDbServiceTest {
   @Mock
   private TraineeCoreService traineeCoreService;
 
+  @Mock
+  private DoctorCountService doctorCountService;
+
+  @Mock
+  private GmcSyncHashCache gmcSyncHashCache;
+
+  @Mock
+  private Page<DoctorsForDb> page;
+
+  @Mock
+  private BulkWriteResult bulkWriteResult;
+
   @Mock
   private TraineeCoreDto coreDto1;
 
@@ -82,8 +127,11 @@ public class DoctorsForDbServiceTest {
   @Mock
   private TraineeCoreDto coreDto5;
 
-  @Mock
-  private Page page;
+  @Captor
+  private ArgumentCaptor<Map<String, Map<String, Object>>> changesCaptor;
+
+  @Captor
+  private ArgumentCaptor<Map<String, Map<String, Object>>> reapplyCaptor;
 
   private DoctorsForDb doc1;
   private DoctorsForDb doc2;
@@ -151,22 +199,33 @@ public class DoctorsForDbServiceTest {
   private String grade4;
   private String grade5;
 
-  @Before
-  public void setup() {
+  @BeforeEach
+  void setup() {
     ReflectionTestUtils.setField(doctorsForDbService, "pageSize", 20);
+    ReflectionTestUtils.setField(doctorsForDbService, "queryTimeout", 5000L);
+    ReflectionTestUtils.setField(doctorsForDbService, "tcsTimeout", 5000L);
+    ReflectionTestUtils.setField(doctorsForDbService, "doctorsSummaryExecutor",
+        (Executor) Runnable::run);
+    ReflectionTestUtils.setField(doctorsForDbService, "objectMapper", objectMapper);
+    ReflectionTestUtils.setField(doctorsForDbService, "meterRegistry", meterRegistry);
+    ReflectionTestUtils.setField(doctorsForDbService, "doctorsSummaryCache",
+        new DoctorsSummaryCache(meterRegistry, 10000L, 100L));
     setupData();
   }
 
   @Test
-  public void shouldReturnListOfAllDoctors() {
+  void shouldReturnListOfAllDoctors() {
 
     final Pageable pageableAndSortable = PageRequest.of(1, 20, by(DESC, "submissionDate"));
-    when(repository.findAll(pageableAndSortable, "")).thenReturn(page);
+    when(repository.findPageWithTotal(pageableAndSortable, "")).thenReturn(page);
+    when(page.getContent()).thenReturn(of(doc1, doc2, doc3, doc4, doc5));
+    when(page.getTotalPages()).thenReturn(1);
+    when(page.getTotalElements()).thenReturn(5L);
     when(traineeCoreService
-        .getTraineeInformationFromCore(of(gmcRef1, gmcRef2, gmcRef3, gmcRef4, gmcRef5)))
-        .thenReturn(
+        .getTraineeInformationFromCoreAsync(of(gmcRef1, gmcRef2, gmcRef3, gmcRef4, gmcRef5)))
+        .thenReturn(completedFuture(
             Map.of(gmcRef1, coreDto1, gmcRef2, coreDto2, gmcRef3, coreDto3, gmcRef4, coreDto4,
-                gmcRef5, coreDto5));
+                gmcRef5, coreDto5)));
     when(coreDto1.getCurriculumEndDate()).thenReturn(curriculumEndDate1);
     when(coreDto1.getProgrammeName()).thenReturn(progName1);
     when(coreDto1.getProgrammeMembershipType()).thenReturn(memType1);
@@ -192,10 +251,8 @@ public class DoctorsForDbServiceTest {
     when(coreDto5.getProgrammeMembershipType()).thenReturn(memType5);
     when(coreDto5.getCurrentGrade()).thenReturn(grade5);
 
-    when(page.get()).thenReturn(Stream.of(doc1, doc2, doc3, doc4, doc5));
-    when(page.getTotalPages()).thenReturn(1);
-    when(repository.countByUnderNoticeIn(YES, ON_HOLD)).thenReturn(2L);
-    when(repository.count()).thenReturn(5L);
+    when(doctorCountService.getCountUnderNotice()).thenReturn(2L);
+    when(doctorCountService.getCountAll()).thenReturn(5L);
     final var requestDto = TraineeRequestDto.builder()
         .sortOrder("desc")
         .sortColumn("submissionDate")
@@ -278,12 +335,15 @@ public class DoctorsForDbServiceTest {
   }
 
   @Test
-  public void shouldReturnListOfUnderNoticeDoctors() {
+  void shouldReturnListOfUnderNoticeDoctors() {
 
     final Pageable pageableAndSortable = PageRequest.of(1, 20, by(DESC, "submissionDate"));
-    when(repository.findAllByUnderNoticeIn(pageableAndSortable, "", YES, ON_HOLD)).thenReturn(page);
-    when(traineeCoreService.getTraineeInformationFromCore(of(gmcRef1, gmcRef2)))
-        .thenReturn(Map.of(gmcRef1, coreDto1, gmcRef2, coreDto2));
+    when(repository.findPageWithTotal(pageableAndSortable, "", YES, ON_HOLD)).thenReturn(page);
+    when(page.getContent()).thenReturn(of(doc1, doc2));
+    when(page.getTotalPages()).thenReturn(1);
+    when(page.getTotalElements()).thenReturn(2L);
+    when(traineeCoreService.getTraineeInformationFromCoreAsync(of(gmcRef1, gmcRef2)))
+        .thenReturn(completedFuture(Map.of(gmcRef1, coreDto1, gmcRef2, coreDto2)));
     when(coreDto1.getCurriculumEndDate()).thenReturn(curriculumEndDate1);
     when(coreDto1.getProgrammeName()).thenReturn(progName1);
     when(coreDto1.getProgrammeMembershipType()).thenReturn(memType1);
@@ -294,10 +354,8 @@ public class DoctorsForDbServiceTest {
     when(coreDto2.getProgrammeMembershipType()).thenReturn(memType2);
     when(coreDto2.getCurrentGrade()).thenReturn(grade2);
 
-    when(page.get()).thenReturn(Stream.of(doc1, doc2));
-    when(page.getTotalPages()).thenReturn(1);
-    when(repository.countByUnderNoticeIn(YES, ON_HOLD)).thenReturn(2L);
-    when(repository.count()).thenReturn(5L);
+    when(doctorCountService.getCountUnderNotice()).thenReturn(2L);
+    when(doctorCountService.getCountAll()).thenReturn(5L);
     final var requestDto = TraineeRequestDto.builder()
         .sortOrder("desc")
         .sortColumn("submissionDate")
@@ -340,11 +398,11 @@ public class DoctorsForDbServiceTest {
   }
 
   @Test
-  public void shouldReturnEmptyListOfDoctorsWhenNoRecordFound() {
+  void shouldReturnEmptyListOfDoctorsWhenNoRecordFound() {
     final Pageable pageableAndSortable = PageRequest.of(1, 20, by(DESC, "submissionDate"));
-    when(repository.findAll(pageableAndSortable, "")).thenReturn(page);
-    when(page.get()).thenReturn(Stream.of());
-    when(repository.countByUnderNoticeIn(YES, ON_HOLD)).thenReturn(0L);
+    when(repository.findPageWithTotal(pageableAndSortable, "")).thenReturn(page);
+    when(page.getContent()).thenReturn(of());
+    when(doctorCountService.getCountUnderNotice()).thenReturn(0L);
     final var requestDto = TraineeRequestDto.builder()
         .sortOrder("desc")
         .sortColumn("submissionDate")
@@ -360,12 +418,145 @@ public class DoctorsForDbServiceTest {
   }
 
   @Test
-  public void shouldReturnListOfAllDoctorsWhoMatchSearchQuery() {
+  void shouldRecordTimerForEachSummaryStage() {
+    final Pageable pageableAndSortable = PageRequest.of(0, 20, by(DESC, "submissionDate"));
+    when(repository.findPageWithTotal(pageableAndSortable, "")).thenReturn(page);
+    when(page.getContent()).thenReturn(of());
+    when(traineeCoreService.getTraineeInformationFromCoreAsync(of()))
+        .thenReturn(completedFuture(Map.of()));
+    final var requestDto = TraineeRequestDto.builder()
+        .sortOrder("desc")
+        .sortColumn("submissionDate")
+        .pageNumber(0)
+        .searchQuery("")
+        .build();
+
+    doctorsForDbService.getAllTraineeDoctorDetails(requestDto);
+
+    for (final var stage : of("query", "counts", "tcs", "conversion")) {
+      final var timer = meterRegistry.find("reval.doctors.summary").tag("stage", stage).timer();
+      assertThat("Missing timer for stage " + stage, timer, notNullValue());
+      assertThat(timer.count(), is(1L));
+    }
+  }
+
+  @Test
+  void shouldFlagSummaryWhenTcsDegraded() {
+    final Pageable pageableAndSortable = PageRequest.of(0, 20, by(DESC, "submissionDate"));
+    when(repository.findPageWithTotal(pageableAndSortable, "")).thenReturn(page);
+    when(page.getContent()).thenReturn(of(doc1));
+    when(traineeCoreService.getTraineeInformationFromCoreAsync(of(gmcRef1)))
+        .thenReturn(completedFuture(Map.of()));
+    when(traineeCoreService.isDegraded()).thenReturn(true);
+    final var requestDto = TraineeRequestDto.builder()
+        .sortOrder("desc")
+        .sortColumn("submissionDate")
+        .pageNumber(0)
+        .searchQuery("")
+        .build();
+
+    final var summary = doctorsForDbService.getAllTraineeDoctorDetails(requestDto);
+    doctorsForDbService.getAllTraineeDoctorDetails(requestDto);
+
+    assertThat(summary.isCoreDataDegraded(), is(true));
+    assertThat(summary.getTraineeInfo(), hasSize(1));
+    assertThat(summary.getTraineeInfo().get(0).getProgrammeName(), nullValue());
+    verify(repository, times(2)).findPageWithTotal(pageableAndSortable, "");
+  }
+
+  @Test
+  void shouldServeRepeatedSummaryFromCache() {
+    final Pageable pageableAndSortable = PageRequest.of(0, 20, by(DESC, "submissionDate"));
+    when(repository.findPageWithTotal(pageableAndSortable, "")).thenReturn(page);
+    when(page.getContent()).thenReturn(of(doc1));
+    when(traineeCoreService.getTraineeInformationFromCoreAsync(of(gmcRef1)))
+        .thenReturn(completedFuture(Map.of()));
+    final var requestDto = TraineeRequestDto.builder()
+        .sortOrder("desc")
+        .sortColumn("submissionDate")
+        .pageNumber(0)
+        .searchQuery("")
+        .build();
+
+    final var first = doctorsForDbService.getAllTraineeDoctorDetails(requestDto);
+    final var second = doctorsForDbService.getAllTraineeDoctorDetails(requestDto);
+
+    assertThat(second, is(first));
+    verify(repository, times(1)).findPageWithTotal(pageableAndSortable, "");
+  }
+
+  @Test
+  void shouldReloadSummaryAfterDoctorsSaved() {
+    final Pageable pageableAndSortable = PageRequest.of(0, 20, by(DESC, "submissionDate"));
+    when(repository.findPageWithTotal(pageableAndSortable, "")).thenReturn(page);
+    when(page.getContent()).thenReturn(of(doc1));
+    when(traineeCoreService.getTraineeInformationFromCoreAsync(of(gmcRef1)))
+        .thenReturn(completedFuture(Map.of()));
+    when(repository.findAllById(Set.of(gmcRef2))).thenReturn(of());
+    when(repository.saveGmcChanges(any())).thenReturn(bulkWriteResult);
+    final var requestDto = TraineeRequestDto.builder()
+        .sortOrder("desc")
+        .sortColumn("submissionDate")
+        .pageNumber(0)
+        .searchQuery("")
+        .build();
+
+    doctorsForDbService.getAllTraineeDoctorDetails(requestDto);
+    doctorsForDbService.updateTrainee(gmcDoctor(gmcRef2, fname2, lname2, "No"));
+    doctorsForDbService.getAllTraineeDoctorDetails(requestDto);
+
+    verify(repository, times(2)).findPageWithTotal(pageableAndSortable, "");
+  }
+
+  @Test
+  void shouldFlagSummaryWhenTcsFails() {
+    final Pageable pageableAndSortable = PageRequest.of(0, 20, by(DESC, "submissionDate"));
+    when(repository.findPageWithTotal(pageableAndSortable, "")).thenReturn(page);
+    when(page.getContent()).thenReturn(of(doc1));
+    when(traineeCoreService.getTraineeInformationFromCoreAsync(of(gmcRef1)))
+        .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("TCS unavailable")));
+    final var requestDto = TraineeRequestDto.builder()
+        .sortOrder("desc")
+        .sortColumn("submissionDate")
+        .pageNumber(0)
+        .searchQuery("")
+        .build();
+
+    final var summary = doctorsForDbService.getAllTraineeDoctorDetails(requestDto);
+
+    assertThat(summary.isCoreDataDegraded(), is(true));
+    assertThat(summary.getTraineeInfo(), hasSize(1));
+  }
+
+  @Test
+  void shouldFailSummaryWhenExecutorSaturated() {
+    ReflectionTestUtils.setField(doctorsForDbService, "doctorsSummaryExecutor",
+        (Executor) command -> {
+          throw new RejectedExecutionException("Saturated");
+        });
+    final var requestDto = TraineeRequestDto.builder()
+        .sortOrder("desc")
+        .sortColumn("submissionDate")
+        .pageNumber(0)
+        .searchQuery("")
+        .build();
+
+    final var summary = doctorsForDbService.getAllTraineeDoctorDetailsAsync(requestDto);
+
+    final var exception = assertThrows(ExecutionException.class, summary::get);
+    assertThat(exception.getCause(), instanceOf(RejectedExecutionException.class));
+  }
+
+  @Test
+  void shouldReturnListOfAllDoctorsWhoMatchSearchQuery() {
 
     final Pageable pageableAndSortable = PageRequest.of(1, 20, by(DESC, "submissionDate"));
-    when(repository.findAll(pageableAndSortable, "query")).thenReturn(page);
-    when(traineeCoreService.getTraineeInformationFromCore(of(gmcRef1, gmcRef4)))
-        .thenReturn(Map.of(gmcRef1, coreDto1, gmcRef4, coreDto4));
+    when(repository.findPageWithTotal(pageableAndSortable, "query")).thenReturn(page);
+    when(page.getContent()).thenReturn(of(doc1, doc4));
+    when(page.getTotalPages()).thenReturn(1);
+    when(page.getTotalElements()).thenReturn(2L);
+    when(traineeCoreService.getTraineeInformationFromCoreAsync(of(gmcRef1, gmcRef4)))
+        .thenReturn(completedFuture(Map.of(gmcRef1, coreDto1, gmcRef4, coreDto4)));
     when(coreDto1.getCurriculumEndDate()).thenReturn(curriculumEndDate1);
     when(coreDto1.getProgrammeName()).thenReturn(progName1);
     when(coreDto1.getProgrammeMembershipType()).thenReturn(memType1);
@@ -376,11 +567,8 @@ public class DoctorsForDbServiceTest {
     when(coreDto4.getProgrammeMembershipType()).thenReturn(memType4);
     when(coreDto4.getCurrentGrade()).thenReturn(grade4);
 
-    when(page.get()).thenReturn(Stream.of(doc1, doc4));
-    when(page.getTotalPages()).thenReturn(1);
-    when(page.getTotalElements()).thenReturn(2L);
-    when(repository.countByUnderNoticeIn(YES, ON_HOLD)).thenReturn(2L);
-    when(repository.count()).thenReturn(5L);
+    when(doctorCountService.getCountUnderNotice()).thenReturn(2L);
+    when(doctorCountService.getCountAll()).thenReturn(5L);
     final var requestDto = TraineeRequestDto.builder()
         .sortOrder("desc")
         .sortColumn("submissionDate")
@@ -422,6 +610,198 @@ public class DoctorsForDbServiceTest {
     assertThat(doctorsForDb.get(1).getCurrentGrade(), is(grade4));
   }
 
+  @Test
+  void shouldReturnNextCursorWhenMoreDoctorsAfterPage() {
+    ReflectionTestUtils.setField(doctorsForDbService, "pageSize", 2);
+    final var order = new Sort.Order(DESC, "submissionDate");
+    when(repository.findPageAfter(order, null, null, 3, "")).thenReturn(of(doc1, doc2, doc3));
+    final var requestDto = TraineeRequestDto.builder()
+        .sortOrder("desc")
+        .sortColumn("submissionDate")
+        .searchQuery("")
+        .cursor("")
+        .build();
+
+    final var firstPage = doctorsForDbService.getAllTraineeDoctorDetails(requestDto);
+
+    assertThat(firstPage.getTraineeInfo(), hasSize(2));
+    assertThat(firstPage.getTraineeInfo().get(1).getGmcReferenceNumber(), is(gmcRef2));
+    assertThat(firstPage.getNextCursor(), notNullValue());
+
+    when(repository.findPageAfter(order, subDate2.toString(), gmcRef2, 3, ""))
+        .thenReturn(of(doc3));
+    requestDto.setCursor(firstPage.getNextCursor());
+
+    final var secondPage = doctorsForDbService.getAllTraineeDoctorDetails(requestDto);
+
+    assertThat(secondPage.getTraineeInfo(), hasSize(1));
+    assertThat(secondPage.getTraineeInfo().get(0).getGmcReferenceNumber(), is(gmcRef3));
+    assertThat(secondPage.getNextCursor(), nullValue());
+  }
+
+  @Test
+  void shouldRevertToFirstPageWhenCursorInvalid() {
+    ReflectionTestUtils.setField(doctorsForDbService, "pageSize", 2);
+    final var order = new Sort.Order(ASC, "doctorLastName");
+    when(repository.findPageAfter(order, null, null, 3, "")).thenReturn(of(doc1));
+    final var requestDto = TraineeRequestDto.builder()
+        .sortOrder("asc")
+        .sortColumn("doctorLastName")
+        .searchQuery("")
+        .cursor("not-a-cursor")
+        .build();
+
+    final var page = doctorsForDbService.getAllTraineeDoctorDetails(requestDto);
+
+    assertThat(page.getTraineeInfo(), hasSize(1));
+    assertThat(page.getNextCursor(), nullValue());
+  }
+
+  @Test
+  void shouldRevertToFirstPageWhenCursorValueTampered() {
+    ReflectionTestUtils.setField(doctorsForDbService, "pageSize", 2);
+    final var order = new Sort.Order(DESC, "submissionDate");
+    when(repository.findPageAfter(order, null, null, 3, "")).thenReturn(of(doc1));
+    final var tamperedCursor = new DoctorsPageCursor("submissionDate", DESC, "not-a-date",
+        gmcRef2).encode();
+    final var requestDto = TraineeRequestDto.builder()
+        .sortOrder("desc")
+        .sortColumn("submissionDate")
+        .searchQuery("")
+        .cursor(tamperedCursor)
+        .build();
+
+    final var page = doctorsForDbService.getAllTraineeDoctorDetails(requestDto);
+
+    assertThat(page.getTraineeInfo(), hasSize(1));
+    assertThat(page.getTraineeInfo().get(0).getGmcReferenceNumber(), is(gmcRef1));
+  }
+
+  @Test
+  void shouldExportDoctorsAsNdjsonInBatches() throws Exception {
+    ReflectionTestUtils.setField(doctorsForDbService, "exportBatchSize", 2);
+    when(repository.streamAllBy()).thenReturn(Stream.of(doc1, doc2, doc3));
+    when(traineeCoreService.getTraineeInformationFromCore(of(gmcRef1, gmcRef2)))
+        .thenReturn(Map.of(gmcRef1, coreDto1));
+    when(traineeCoreService.getTraineeInformationFromCore(of(gmcRef3))).thenReturn(Map.of());
+    when(coreDto1.getProgrammeName()).thenReturn(progName1);
+    final var outputStream = new ByteArrayOutputStream();
+
+    doctorsForDbService.exportTraineeDoctorDetails(ExportFormat.NDJSON, false, outputStream);
+
+    final var lines = outputStream.toString(StandardCharsets.UTF_8).split("\n");
+    assertThat(lines.length, is(3));
+    final var first = objectMapper.readValue(lines[0], TraineeInfoDto.class);
+    assertThat(first.getGmcReferenceNumber(), is(gmcRef1));
+    assertThat(first.getProgrammeName(), is(progName1));
+    final var third = objectMapper.readValue(lines[2], TraineeInfoDto.class);
+    assertThat(third.getGmcReferenceNumber(), is(gmcRef3));
+    assertThat(third.getProgrammeName(), nullValue());
+  }
+
+  @Test
+  void shouldExportUnderNoticeDoctorsAsCsv() throws Exception {
+    ReflectionTestUtils.setField(doctorsForDbService, "exportBatchSize", 2);
+    doc1.setDoctorFirstName("Jane, \"JJ\"");
+    when(repository.streamByUnderNoticeIn(YES, ON_HOLD)).thenReturn(Stream.of(doc1));
+    when(traineeCoreService.getTraineeInformationFromCore(of(gmcRef1))).thenReturn(Map.of());
+    final var outputStream = new ByteArrayOutputStream();
+
+    doctorsForDbService.exportTraineeDoctorDetails(ExportFormat.CSV, true, outputStream);
+
+    final var lines = outputStream.toString(StandardCharsets.UTF_8).split("\n");
+    assertThat(lines.length, is(2));
+    assertThat(lines[0], startsWith("gmcReferenceNumber,doctorFirstName,doctorLastName,"));
+    assertThat(lines[1], startsWith(gmcRef1 + ",\"Jane, \"\"JJ\"\"\"," + lname1 + ","));
+  }
+
+  @Test
+  void shouldSaveOnlyChangedGmcFieldsKeepingLastOccurrenceOfDoctor() {
+    final var stored = DoctorsForDb.convert(gmcDoctor(gmcRef1, fname1, lname1, "Yes"));
+    stored.setDoctorStatus(RecommendationStatus.SUBMITTED_TO_GMC);
+    final var staleDoctor = gmcDoctor(gmcRef1, fname2, lname1, "Yes");
+    final var updatedDoctor = gmcDoctor(gmcRef1, fname1, lname1, "No");
+    final var newDoctor = gmcDoctor(gmcRef2, fname2, lname2, "Yes");
+    when(repository.findAllById(Set.of(gmcRef1, gmcRef2))).thenReturn(of(stored));
+    when(repository.saveGmcChanges(any())).thenReturn(bulkWriteResult);
+
+    doctorsForDbService.updateTrainees(of(staleDoctor, updatedDoctor, newDoctor));
+
+    verify(repository).saveGmcChanges(changesCaptor.capture());
+    final var changes = changesCaptor.getValue();
+    assertThat(changes.size(), is(2));
+    assertThat(changes.get(gmcRef1), is(Map.of("underNotice", UnderNotice.NO,
+        "syncHash", GmcSyncHashCache.hash(updatedDoctor))));
+    assertThat(changes.get(gmcRef2).get("doctorFirstName"), is(fname2));
+    assertThat(changes.get(gmcRef2).get("normalisedGmcNumber"), is(gmcRef2));
+    verify(doctorCountService).onDoctorSaved(eq(stored), any(DoctorsForDb.class));
+    verify(doctorCountService).onDoctorSaved(isNull(), any(DoctorsForDb.class));
+    verify(traineeCoreService).evict(gmcRef1);
+    verify(traineeCoreService).evict(gmcRef2);
+    verify(repository, never()).save(any());
+  }
+
+  @Test
+  void shouldNotWriteWhenGmcDataUnchanged() {
+    final var gmcDoctor = gmcDoctor(gmcRef1, fname1, lname1, "Yes");
+    when(repository.findAllById(Set.of(gmcRef1)))
+        .thenReturn(of(DoctorsForDb.convert(gmcDoctor)));
+
+    doctorsForDbService.updateTrainee(gmcDoctor);
+
+    verify(repository, never()).saveGmcChanges(any());
+    verify(doctorCountService, never()).onDoctorSaved(any(), any());
+    verify(traineeCoreService, never()).evict(any());
+  }
+
+  @Test
+  void shouldOnlyReapplyMessagesWithUnchangedSyncHashWithoutReadingDoctors() {
+    final var unchangedDoctor = gmcDoctor(gmcRef1, fname1, lname1, "Yes");
+    final var changedDoctor = gmcDoctor(gmcRef2, fname2, lname2, "No");
+    when(gmcSyncHashCache.isUnchanged(gmcRef1, GmcSyncHashCache.hash(unchangedDoctor)))
+        .thenReturn(true);
+    when(repository.reapplyGmcData(any())).thenReturn(bulkWriteResult);
+    when(repository.findAllById(Set.of(gmcRef2))).thenReturn(of());
+    when(repository.saveGmcChanges(any())).thenReturn(bulkWriteResult);
+
+    doctorsForDbService.updateTrainees(of(unchangedDoctor, changedDoctor));
+
+    verify(repository).reapplyGmcData(reapplyCaptor.capture());
+    assertThat(reapplyCaptor.getValue().keySet(), is(Set.of(gmcRef1)));
+    assertThat(reapplyCaptor.getValue().get(gmcRef1).get("syncHash"),
+        is(GmcSyncHashCache.hash(unchangedDoctor)));
+    assertThat(reapplyCaptor.getValue().get(gmcRef1).get("doctorFirstName"), is(fname1));
+
+    verify(repository).saveGmcChanges(changesCaptor.capture());
+    assertThat(changesCaptor.getValue().keySet(), is(Set.of(gmcRef2)));
+    assertThat(changesCaptor.getValue().get(gmcRef2).get("syncHash"),
+        is(GmcSyncHashCache.hash(changedDoctor)));
+    verify(traineeCoreService, never()).evict(gmcRef1);
+    verify(gmcSyncHashCache).remember(gmcRef2, GmcSyncHashCache.hash(changedDoctor));
+    verify(gmcSyncHashCache, never()).remember(eq(gmcRef1), anyLong());
+  }
+
+  @Test
+  void shouldEvictDoctorsWhenUnchangedSyncHashWasStale() {
+    final var unchangedDoctor = gmcDoctor(gmcRef1, fname1, lname1, "Yes");
+    when(gmcSyncHashCache.isUnchanged(gmcRef1, GmcSyncHashCache.hash(unchangedDoctor)))
+        .thenReturn(true);
+    when(repository.reapplyGmcData(any())).thenReturn(bulkWriteResult);
+    when(bulkWriteResult.getModifiedCount()).thenReturn(1);
+
+    doctorsForDbService.updateTrainee(unchangedDoctor);
+
+    verify(traineeCoreService).evict(gmcRef1);
+    verify(repository, never()).findAllById(any());
+    verify(repository, never()).saveGmcChanges(any());
+  }
+
+  private DoctorsForDbDto gmcDoctor(final String gmcNumber, final String firstName,
+      final String lastName, final String underNotice) {
+    return DoctorsForDbDto.builder().gmcReferenceNumber(gmcNumber).doctorFirstName(firstName)
+        .doctorLastName(lastName).underNotice(underNotice).build();
+  }
+
   private void setupData() {
     gmcRef1 = faker.number().digits(8);
     gmcRef2 = faker.number().digits(8);
@@ -495,15 +875,25 @@ public class DoctorsForDbServiceTest {
     grade4 = faker.lorem().characters(5);
     grade5 = faker.lorem().characters(5);
 
-    doc1 = new DoctorsForDb(gmcRef1, fname1, lname1, subDate1, addedDate1, un1, sanction1, status1,
-        now(), "HAA");
-    doc2 = new DoctorsForDb(gmcRef2, fname2, lname2, subDate2, addedDate2, un2, sanction2, status2,
-        now(), "HAA");
-    doc3 = new DoctorsForDb(gmcRef3, fname3, lname3, subDate3, addedDate3, un3, sanction3, status3,
-        now(), "HAA");
-    doc4 = new DoctorsForDb(gmcRef4, fname4, lname4, subDate4, addedDate4, un4, sanction4, status4,
-        now(), "HAA");
-    doc5 = new DoctorsForDb(gmcRef5, fname5, lname5, subDate5, addedDate5, un5, sanction5, status5,
-        now(), "HAA");
+    doc1 = DoctorsForDb.builder().gmcReferenceNumber(gmcRef1).doctorFirstName(fname1)
+        .doctorLastName(lname1).submissionDate(subDate1).dateAdded(addedDate1).underNotice(un1)
+        .sanction(sanction1).doctorStatus(status1).lastUpdatedDate(now())
+        .designatedBodyCode("HAA").build();
+    doc2 = DoctorsForDb.builder().gmcReferenceNumber(gmcRef2).doctorFirstName(fname2)
+        .doctorLastName(lname2).submissionDate(subDate2).dateAdded(addedDate2).underNotice(un2)
+        .sanction(sanction2).doctorStatus(status2).lastUpdatedDate(now())
+        .designatedBodyCode("HAA").build();
+    doc3 = DoctorsForDb.builder().gmcReferenceNumber(gmcRef3).doctorFirstName(fname3)
+        .doctorLastName(lname3).submissionDate(subDate3).dateAdded(addedDate3).underNotice(un3)
+        .sanction(sanction3).doctorStatus(status3).lastUpdatedDate(now())
+        .designatedBodyCode("HAA").build();
+    doc4 = DoctorsForDb.builder().gmcReferenceNumber(gmcRef4).doctorFirstName(fname4)
+        .doctorLastName(lname4).submissionDate(subDate4).dateAdded(addedDate4).underNotice(un4)
+        .sanction(sanction4).doctorStatus(status4).lastUpdatedDate(now())
+        .designatedBodyCode("HAA").build();
+    doc5 = DoctorsForDb.builder().gmcReferenceNumber(gmcRef5).doctorFirstName(fname5)
+        .doctorLastName(lname5).submissionDate(subDate5).dateAdded(addedDate5).underNotice(un5)
+        .sanction(sanction5).doctorStatus(status5).lastUpdatedDate(now())
+        .designatedBodyCode("HAA").build();
   }
 }
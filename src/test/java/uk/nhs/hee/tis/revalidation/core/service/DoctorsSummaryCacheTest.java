@@ -0,0 +1,140 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2020 Crown Copyright (Health Education England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.core.service;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.nhs.hee.tis.revalidation.core.dto.TraineeRequestDto;
+import uk.nhs.hee.tis.revalidation.core.dto.TraineeSummaryDto;
+
+class DoctorsSummaryCacheTest {
+
+  private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final AtomicInteger loads = new AtomicInteger();
+
+  private DoctorsSummaryCache cache;
+
+  @BeforeEach
+  void setUp() {
+    cache = new DoctorsSummaryCache(meterRegistry, 10000L, 100L);
+  }
+
+  @Test
+  void shouldServeRepeatedRequestFromCache() {
+    final var summary = TraineeSummaryDto.builder().countTotal(5L).build();
+
+    final var first = cache.getOrLoad(request("desc", ""), r -> load(summary)).join();
+    final var second = cache.getOrLoad(request("desc", ""), r -> load(summary)).join();
+
+    assertThat("Unexpected summary.", second, sameInstance(first));
+    assertThat("Unexpected number of loads.", loads.get(), is(1));
+    assertThat("Unexpected hit count.",
+        meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count(), is(1.0));
+    assertThat("Unexpected miss count.",
+        meterRegistry.get("cache.gets").tag("result", "miss").functionCounter().count(), is(1.0));
+  }
+
+  @Test
+  void shouldTreatEquivalentRequestsAlike() {
+    final var summary = TraineeSummaryDto.builder().build();
+    final var request = request("DESC", null);
+    request.setCursor("");
+    request.setPageNumber(3);
+    final var equivalentRequest = request("desc", "");
+    equivalentRequest.setCursor("");
+
+    cache.getOrLoad(request, r -> load(summary)).join();
+    cache.getOrLoad(equivalentRequest, r -> load(summary)).join();
+
+    assertThat("Unexpected number of loads.", loads.get(), is(1));
+  }
+
+  @Test
+  void shouldCacheDifferentRequestsSeparately() {
+    final var summary = TraineeSummaryDto.builder().build();
+
+    cache.getOrLoad(request("desc", ""), r -> load(summary)).join();
+    cache.getOrLoad(request("desc", "smith"), r -> load(summary)).join();
+
+    assertThat("Unexpected number of loads.", loads.get(), is(2));
+  }
+
+  @Test
+  void shouldNotCacheDegradedSummary() {
+    final var summary = TraineeSummaryDto.builder().coreDataDegraded(true).build();
+
+    cache.getOrLoad(request("desc", ""), r -> load(summary)).join();
+    cache.getOrLoad(request("desc", ""), r -> load(summary)).join();
+
+    assertThat("Unexpected number of loads.", loads.get(), is(2));
+  }
+
+  @Test
+  void shouldReloadAfterInvalidation() {
+    final var summary = TraineeSummaryDto.builder().build();
+
+    cache.getOrLoad(request("desc", ""), r -> load(summary)).join();
+    cache.invalidateAll();
+    cache.getOrLoad(request("desc", ""), r -> load(summary)).join();
+
+    assertThat("Unexpected number of loads.", loads.get(), is(2));
+  }
+
+  @Test
+  void shouldNotCacheSummaryLoadedDuringInvalidation() {
+    final var summary = TraineeSummaryDto.builder().build();
+    final var pendingLoad = new CompletableFuture<TraineeSummaryDto>();
+
+    final var first = cache.getOrLoad(request("desc", ""), r -> {
+      loads.incrementAndGet();
+      return pendingLoad;
+    });
+    cache.invalidateAll();
+    pendingLoad.complete(summary);
+    cache.getOrLoad(request("desc", ""), r -> load(summary)).join();
+
+    assertThat("Unexpected summary.", first.join(), sameInstance(summary));
+    assertThat("Unexpected number of loads.", loads.get(), is(2));
+  }
+
+  private CompletableFuture<TraineeSummaryDto> load(final TraineeSummaryDto summary) {
+    loads.incrementAndGet();
+    return completedFuture(summary);
+  }
+
+  private static TraineeRequestDto request(final String sortOrder, final String searchQuery) {
+    return TraineeRequestDto.builder()
+        .sortColumn("submissionDate")
+        .sortOrder(sortOrder)
+        .searchQuery(searchQuery)
+        .build();
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2020 Crown Copyright (Health Education England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.core.service;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+import java.time.LocalDate;
+import java.util.function.BiConsumer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import uk.nhs.hee.tis.revalidation.core.dto.DoctorsForDbDto;
+import uk.nhs.hee.tis.revalidation.core.repository.DoctorsForDbRepository;
+
+@ExtendWith(MockitoExtension.class)
+class GmcSyncHashCacheTest {
+
+  @InjectMocks
+  private GmcSyncHashCache gmcSyncHashCache;
+
+  @Mock
+  private DoctorsForDbRepository repository;
+
+  @Test
+  void shouldHashEqualMessagesTheSame() {
+    assertThat("Unexpected hash.", GmcSyncHashCache.hash(doctor("Smith")),
+        is(GmcSyncHashCache.hash(doctor("Smith"))));
+  }
+
+  @Test
+  void shouldHashChangedMessagesDifferently() {
+    assertThat("Unexpected hash.", GmcSyncHashCache.hash(doctor("Smith")),
+        not(GmcSyncHashCache.hash(doctor("Smyth"))));
+  }
+
+  @Test
+  void shouldDistinguishNullFromEmptyValues() {
+    assertThat("Unexpected hash.", GmcSyncHashCache.hash(doctor(null)),
+        not(GmcSyncHashCache.hash(doctor(""))));
+  }
+
+  @Test
+  void shouldReportUnchangedOnlyForRememberedHash() {
+    final var hash = GmcSyncHashCache.hash(doctor("Smith"));
+
+    assertThat("Unexpected unchanged.", gmcSyncHashCache.isUnchanged("1234567", hash), is(false));
+    gmcSyncHashCache.remember("1234567", hash);
+    assertThat("Unexpected unchanged.", gmcSyncHashCache.isUnchanged("1234567", hash), is(true));
+    assertThat("Unexpected unchanged.", gmcSyncHashCache.isUnchanged("1234567", hash + 1),
+        is(false));
+  }
+
+  @Test
+  void shouldRebuildFromStoredHashesWithoutOverwritingNewerHashes() {
+    doAnswer(invocation -> {
+      final BiConsumer<String, Long> consumer = invocation.getArgument(0);
+      consumer.accept("1234567", 1L);
+      consumer.accept("7654321", 2L);
+      return null;
+    }).when(repository).findAllSyncHashes(any());
+    gmcSyncHashCache.remember("1234567", 3L);
+
+    gmcSyncHashCache.rebuild();
+
+    assertThat("Unexpected unchanged.", gmcSyncHashCache.isUnchanged("1234567", 3L), is(true));
+    assertThat("Unexpected unchanged.", gmcSyncHashCache.isUnchanged("7654321", 2L), is(true));
+  }
+
+  private DoctorsForDbDto doctor(final String lastName) {
+    return DoctorsForDbDto.builder()
+        .gmcReferenceNumber("1234567")
+        .doctorFirstName("Jane")
+        .doctorLastName(lastName)
+        .submissionDate(LocalDate.of(2020, 1, 1))
+        .underNotice("Yes")
+        .build();
+  }
+}
@@ -0,0 +1,159 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2020 Crown Copyright (Health Education England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.core.service;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.CompletableFuture.failedFuture;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import uk.nhs.hee.tis.revalidation.core.dto.TraineeCoreDto;
+
+class TraineeCoreRequestCoalescerTest {
+
+  private final List<List<String>> batches = Collections.synchronizedList(new ArrayList<>());
+
+  private TraineeCoreRequestCoalescer coalescer;
+
+  @AfterEach
+  void tearDown() {
+    coalescer.shutdown();
+  }
+
+  @Test
+  void shouldShareBatchBetweenConcurrentCallers() throws Exception {
+    coalescer = new TraineeCoreRequestCoalescer(this::load, 50, 10, 1);
+
+    final var first = coalescer.load(List.of("1", "2"));
+    final var second = coalescer.load(List.of("2", "3"));
+
+    assertThat("Unexpected dto.", get(first, "1").getGmcId(), is("1"));
+    assertThat("Unexpected dto.", get(second, "2").getGmcId(), is("2"));
+    assertThat("Unexpected dto.", get(second, "3").getGmcId(), is("3"));
+    assertThat("Unexpected shared future.", first.get("2"), is(second.get("2")));
+    assertThat("Unexpected batches.", batches, contains(List.of("1", "2", "3")));
+  }
+
+  @Test
+  void shouldSplitIntoBoundedBatches() throws Exception {
+    coalescer = new TraineeCoreRequestCoalescer(this::load, 10, 2, 1);
+
+    final var futures = coalescer.load(List.of("1", "2", "3", "4", "5"));
+    for (final var gmcId : futures.keySet()) {
+      get(futures, gmcId);
+    }
+
+    assertThat("Unexpected batches.", batches,
+        contains(List.of("1", "2"), List.of("3", "4"), List.of("5")));
+  }
+
+  @Test
+  void shouldCompleteWithNullWhenTcsHasNoData() throws Exception {
+    coalescer = new TraineeCoreRequestCoalescer(ids -> completedFuture(Map.of()), 10, 10, 1);
+
+    final var futures = coalescer.load(List.of("1"));
+
+    assertThat("Unexpected dto.", get(futures, "1"), nullValue());
+  }
+
+  @Test
+  void shouldCompleteExceptionallyWhenLoadFails() {
+    coalescer = new TraineeCoreRequestCoalescer(
+        ids -> failedFuture(new IllegalStateException("TCS unavailable")), 10, 10, 1);
+
+    final var futures = coalescer.load(List.of("1"));
+
+    final var exception = assertThrows(ExecutionException.class, () -> get(futures, "1"));
+    assertThat("Unexpected cause.", exception.getCause(),
+        instanceOf(IllegalStateException.class));
+  }
+
+  @Test
+  void shouldCompleteExceptionallyWhenLoaderThrows() {
+    coalescer = new TraineeCoreRequestCoalescer(ids -> {
+      throw new IllegalStateException("TCS unavailable");
+    }, 10, 10, 1);
+
+    final var futures = coalescer.load(List.of("1"));
+
+    final var exception = assertThrows(ExecutionException.class, () -> get(futures, "1"));
+    assertThat("Unexpected cause.", exception.getCause(),
+        instanceOf(IllegalStateException.class));
+  }
+
+  @Test
+  void shouldQueueBatchesBeyondMaxConcurrent() throws Exception {
+    final List<CompletableFuture<Map<String, TraineeCoreDto>>> started =
+        Collections.synchronizedList(new ArrayList<>());
+    coalescer = new TraineeCoreRequestCoalescer(ids -> {
+      batches.add(List.copyOf(ids));
+      final var batch = new CompletableFuture<Map<String, TraineeCoreDto>>();
+      started.add(batch);
+      return batch;
+    }, 10, 1, 2);
+
+    final var futures = coalescer.load(List.of("1", "2", "3"));
+    waitFor(() -> started.size() == 2);
+
+    assertThat("Unexpected batches.", batches, contains(List.of("1"), List.of("2")));
+
+    started.get(0).complete(Map.of());
+    waitFor(() -> started.size() == 3);
+
+    assertThat("Unexpected batches.", batches,
+        contains(List.of("1"), List.of("2"), List.of("3")));
+    assertThat("Unexpected dto.", get(futures, "1"), nullValue());
+  }
+
+  private CompletableFuture<Map<String, TraineeCoreDto>> load(final List<String> gmcIds) {
+    batches.add(List.copyOf(gmcIds));
+    return completedFuture(gmcIds.stream()
+        .collect(Collectors.toMap(id -> id, id -> TraineeCoreDto.builder().gmcId(id).build())));
+  }
+
+  private static void waitFor(final BooleanSupplier condition) throws InterruptedException {
+    final long deadline = System.currentTimeMillis() + 5000;
+    while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+      Thread.sleep(5);
+    }
+  }
+
+  private static TraineeCoreDto get(final Map<String, CompletableFuture<TraineeCoreDto>> futures,
+      final String gmcId) throws Exception {
+    return futures.get(gmcId).get(5, TimeUnit.SECONDS);
+  }
+}
@@ -24,40 +24,46 @@ package uk.nhs.hee.tis.revalidation.core.service;
 import static java.time.LocalDate.now;
 import static java.util.List.of;
 import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.Is.is;
-import static org.junit.Assert.assertThat;
-import static org.mockito.Mockito.when;
 
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.javafaker.Faker;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.time.LocalDate;
+import java.util.List;
 import java.util.Map;
-import org.junit.Before;
-import org.junit.Test;
-import org.junit.runner.RunWith;
-import org.mockito.InjectMocks;
-import org.mockito.Mock;
-import org.mockito.junit.MockitoJUnitRunner;
-import org.springframework.core.ParameterizedTypeReference;
-import org.springframework.http.HttpMethod;
-import org.springframework.http.ResponseEntity;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 import org.springframework.test.util.ReflectionTestUtils;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import uk.nhs.hee.tis.revalidation.core.config.TcsCircuitBreakerConfig;
 import uk.nhs.hee.tis.revalidation.core.dto.TraineeCoreDto;
 
-@RunWith(MockitoJUnitRunner.class)
-public class TraineeCoreServiceTest {
+class TraineeCoreServiceTest {
 
-  private static final String API_REVALIDATION = "/api/revalidation";
+  private static final String API_REVALIDATION = "http://localhost/api/revalidation";
   private final Faker faker = new Faker();
+  private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final List<String> requestedUrls = new CopyOnWriteArrayList<>();
+  private final Queue<Supplier<Mono<ClientResponse>>> responses = new ConcurrentLinkedQueue<>();
 
-  @InjectMocks
   private TraineeCoreService traineeCoreService;
-
-  @Mock
-  private RestTemplate restTemplate;
-
-  @Mock
-  private ResponseEntity responseEntity;
+  private CircuitBreaker circuitBreaker;
 
   private String gmcId1;
   private String gmcId2;
@@ -72,19 +78,53 @@ public class TraineeCoreServiceTest {
   private TraineeCoreDto trainee1;
   private TraineeCoreDto trainee2;
 
-  @Before
-  public void setup() {
+  @BeforeEach
+  void setup() {
+    final var circuitBreakerConfig = new TcsCircuitBreakerConfig();
+    ReflectionTestUtils.setField(circuitBreakerConfig, "failureRateThreshold", 50f);
+    ReflectionTestUtils.setField(circuitBreakerConfig, "slowCallRateThreshold", 100f);
+    ReflectionTestUtils.setField(circuitBreakerConfig, "slowCallDuration", 5000L);
+    ReflectionTestUtils.setField(circuitBreakerConfig, "window", 60);
+    ReflectionTestUtils.setField(circuitBreakerConfig, "minimumCalls", 10);
+    ReflectionTestUtils.setField(circuitBreakerConfig, "openDuration", 30000L);
+    ReflectionTestUtils.setField(circuitBreakerConfig, "halfOpenCalls", 3);
+    circuitBreaker = circuitBreakerConfig.tcsCircuitBreaker(CircuitBreakerRegistry.ofDefaults());
+
+    final var webClient = WebClient.builder()
+        .exchangeFunction(request -> {
+          requestedUrls.add(request.url().toString());
+          //The last response is repeated for any further requests
+          final var response = responses.size() > 1 ? responses.poll() : responses.peek();
+          return response.get();
+        })
+        .build();
+
+    traineeCoreService = new TraineeCoreService();
+    ReflectionTestUtils.setField(traineeCoreService, "tcsWebClient", webClient);
     ReflectionTestUtils.setField(traineeCoreService, "tcsUrl", API_REVALIDATION);
+    ReflectionTestUtils.setField(traineeCoreService, "batchWindow", 1L);
+    ReflectionTestUtils.setField(traineeCoreService, "batchMaxSize", 50);
+    ReflectionTestUtils.setField(traineeCoreService, "batchMaxConcurrent", 1);
+    ReflectionTestUtils.setField(traineeCoreService, "timeout", 5000L);
+    ReflectionTestUtils.setField(traineeCoreService, "retryMaxRetries", 2L);
+    ReflectionTestUtils.setField(traineeCoreService, "retryMinBackoff", 1L);
+    ReflectionTestUtils.setField(traineeCoreService, "retryJitter", 0.5);
+    ReflectionTestUtils.setField(traineeCoreService, "traineeCoreCache",
+        Caffeine.newBuilder().build());
+    ReflectionTestUtils.setField(traineeCoreService, "meterRegistry", meterRegistry);
+    ReflectionTestUtils.setField(traineeCoreService, "tcsCircuitBreaker", circuitBreaker);
+    traineeCoreService.initialise();
     setupData();
   }
 
+  @AfterEach
+  void tearDown() {
+    traineeCoreService.shutdown();
+  }
+
   @Test
-  public void shouldFetchTraineeInformationFromTcs() {
-    final var url = String.format("%s/%s", API_REVALIDATION, gmcId1);
-    when(restTemplate.exchange(url, HttpMethod.GET, null,
-        new ParameterizedTypeReference<Map<String, TraineeCoreDto>>() {
-        })).thenReturn(responseEntity);
-    when(responseEntity.getBody()).thenReturn(Map.of(gmcId1, trainee1));
+  void shouldFetchTraineeInformationFromTcs() {
+    respondWith(Map.of(gmcId1, trainee1));
     final var traineeInformationFromCore =
         traineeCoreService.getTraineeInformationFromCore(of(gmcId1));
     assertThat(traineeInformationFromCore.size(), is(1));
@@ -96,15 +136,12 @@ public class TraineeCoreServiceTest {
     assertThat(traineeCoreDto.getCurrentGrade(), is(currentGrade1));
     assertThat(traineeCoreDto.getProgrammeMembershipType(), is(programmeMembershipType1));
     assertThat(traineeCoreDto.getProgrammeName(), is(programmeName1));
+    assertThat(requestedUrls, is(of(String.format("%s/%s", API_REVALIDATION, gmcId1))));
   }
 
   @Test
-  public void shouldFetchMultipleTraineeInformationFromTcs() {
-    final var url = String.format("%s/%s,%s", API_REVALIDATION, gmcId1, gmcId2);
-    when(restTemplate.exchange(url, HttpMethod.GET, null,
-        new ParameterizedTypeReference<Map<String, TraineeCoreDto>>() {
-        })).thenReturn(responseEntity);
-    when(responseEntity.getBody()).thenReturn(Map.of(gmcId1, trainee1, gmcId2, trainee2));
+  void shouldFetchMultipleTraineeInformationFromTcs() {
+    respondWith(Map.of(gmcId1, trainee1, gmcId2, trainee2));
     final var traineeInformationFromCore =
         traineeCoreService.getTraineeInformationFromCore(of(gmcId1, gmcId2));
     assertThat(traineeInformationFromCore.size(), is(2));
@@ -124,21 +161,162 @@ public class TraineeCoreServiceTest {
     assertThat(traineeCoreDto.getCurrentGrade(), is(currentGrade2));
     assertThat(traineeCoreDto.getProgrammeMembershipType(), is(programmeMembershipType2));
     assertThat(traineeCoreDto.getProgrammeName(), is(programmeName2));
+    assertThat(requestedUrls,
+        is(of(String.format("%s/%s,%s", API_REVALIDATION, gmcId1, gmcId2))));
   }
 
   @Test
-  public void shouldReturnEmptyWhenNoRecordFound() {
-    final var url = String.format("%s/%s", API_REVALIDATION, gmcId1);
-    when(restTemplate.exchange(url, HttpMethod.GET, null,
-        new ParameterizedTypeReference<Map<String, TraineeCoreDto>>() {
-        })).thenReturn(responseEntity);
-    when(responseEntity.getBody()).thenReturn(Map.of());
+  void shouldReturnEmptyWhenNoRecordFound() {
+    respondWith(Map.of());
     final var traineeInformationFromCore =
         traineeCoreService.getTraineeInformationFromCore(of(gmcId1));
     assertThat(traineeInformationFromCore.size(), is(0));
   }
 
-  public void setupData() {
+  @Test
+  void shouldCompleteAsyncWithTraineeInformationFromTcs() {
+    respondWith(Map.of(gmcId1, trainee1));
+
+    final var traineeInformationFromCore =
+        traineeCoreService.getTraineeInformationFromCoreAsync(of(gmcId1)).join();
+
+    assertThat(traineeInformationFromCore, is(Map.of(gmcId1, trainee1)));
+  }
+
+  @Test
+  void shouldServeRepeatedRequestsFromCache() {
+    respondWith(Map.of(gmcId1, trainee1));
+
+    traineeCoreService.getTraineeInformationFromCore(of(gmcId1));
+    final var traineeInformationFromCore =
+        traineeCoreService.getTraineeInformationFromCore(of(gmcId1));
+
+    assertThat(traineeInformationFromCore.get(gmcId1), is(trainee1));
+    assertThat(requestedUrls.size(), is(1));
+  }
+
+  @Test
+  void shouldOnlyFetchTraineesMissingFromCache() {
+    respondWith(Map.of(gmcId1, trainee1));
+    traineeCoreService.getTraineeInformationFromCore(of(gmcId1));
+
+    responses.clear();
+    respondWith(Map.of(gmcId2, trainee2));
+    final var traineeInformationFromCore =
+        traineeCoreService.getTraineeInformationFromCore(of(gmcId1, gmcId2));
+
+    assertThat(traineeInformationFromCore, is(Map.of(gmcId1, trainee1, gmcId2, trainee2)));
+    assertThat(requestedUrls.get(1), is(String.format("%s/%s", API_REVALIDATION, gmcId2)));
+  }
+
+  @Test
+  void shouldServeOnlyCachedTraineesWhenCircuitOpen() {
+    respondWith(Map.of(gmcId1, trainee1));
+    traineeCoreService.getTraineeInformationFromCore(of(gmcId1));
+
+    circuitBreaker.transitionToOpenState();
+    final var traineeInformationFromCore =
+        traineeCoreService.getTraineeInformationFromCore(of(gmcId1, gmcId2));
+
+    assertThat(traineeCoreService.isDegraded(), is(true));
+    assertThat(traineeInformationFromCore, is(Map.of(gmcId1, trainee1)));
+    assertThat(requestedUrls.size(), is(1));
+  }
+
+  @Test
+  void shouldCacheTraineesUnknownToTcs() {
+    respondWith(Map.of());
+
+    traineeCoreService.getTraineeInformationFromCore(of(gmcId1));
+    final var traineeInformationFromCore =
+        traineeCoreService.getTraineeInformationFromCore(of(gmcId1));
+
+    assertThat(traineeInformationFromCore.size(), is(0));
+    assertThat(requestedUrls.size(), is(1));
+  }
+
+  @Test
+  void shouldFetchFromTcsAgainWhenEvicted() {
+    respondWith(Map.of(gmcId1, trainee1));
+
+    traineeCoreService.getTraineeInformationFromCore(of(gmcId1));
+    traineeCoreService.evict(gmcId1);
+    traineeCoreService.getTraineeInformationFromCore(of(gmcId1));
+
+    assertThat(requestedUrls.size(), is(2));
+  }
+
+  @Test
+  void shouldNotCacheFailedRequests() {
+    responses.add(() -> Mono.error(new IllegalStateException("TCS unavailable")));
+
+    traineeCoreService.getTraineeInformationFromCore(of(gmcId1));
+    final var traineeInformationFromCore =
+        traineeCoreService.getTraineeInformationFromCore(of(gmcId1));
+
+    assertThat(traineeInformationFromCore.size(), is(0));
+    assertThat(requestedUrls.size(), is(2));
+  }
+
+  @Test
+  void shouldRetryServerErrors() {
+    respondWith(HttpStatus.SERVICE_UNAVAILABLE);
+    respondWith(Map.of(gmcId1, trainee1));
+
+    final var traineeInformationFromCore =
+        traineeCoreService.getTraineeInformationFromCore(of(gmcId1));
+
+    assertThat(traineeInformationFromCore.get(gmcId1), is(trainee1));
+    assertThat(requestedUrls.size(), is(2));
+    assertThat(meterRegistry.get("reval.tcs.requests").tag("outcome", "SERVER_ERROR").timer()
+        .count(), is(1L));
+    assertThat(meterRegistry.get("reval.tcs.requests").tag("outcome", "SUCCESS").timer()
+        .count(), is(1L));
+  }
+
+  @Test
+  void shouldStopRetryingServerErrorsAfterMaxRetries() {
+    respondWith(HttpStatus.INTERNAL_SERVER_ERROR);
+
+    final var traineeInformationFromCore =
+        traineeCoreService.getTraineeInformationFromCore(of(gmcId1));
+
+    assertThat(traineeInformationFromCore.size(), is(0));
+    assertThat(requestedUrls.size(), is(3));
+  }
+
+  @Test
+  void shouldNotRetryClientErrors() {
+    respondWith(HttpStatus.BAD_REQUEST);
+
+    final var traineeInformationFromCore =
+        traineeCoreService.getTraineeInformationFromCore(of(gmcId1));
+
+    assertThat(traineeInformationFromCore.size(), is(0));
+    assertThat(requestedUrls.size(), is(1));
+    assertThat(circuitBreaker.getMetrics().getNumberOfFailedCalls(), is(0));
+  }
+
+  private void respondWith(final Map<String, TraineeCoreDto> traineeCoreDtos) {
+    responses.add(() -> {
+      try {
+        final var body = Jackson2ObjectMapperBuilder.json().build()
+            .writeValueAsString(traineeCoreDtos);
+        return Mono.just(ClientResponse.create(HttpStatus.OK)
+            .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+            .body(body)
+            .build());
+      } catch (final Exception exception) {
+        return Mono.error(exception);
+      }
+    });
+  }
+
+  private void respondWith(final HttpStatus status) {
+    responses.add(() -> Mono.just(ClientResponse.create(status).build()));
+  }
+
+  void setupData() {
     gmcId1 = faker.number().digits(8);
     gmcId2 = faker.number().digits(8);
 
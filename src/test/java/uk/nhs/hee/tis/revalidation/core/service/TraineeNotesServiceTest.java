@@ -30,6 +30,7 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.github.javafaker.Faker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
@@ -41,6 +42,7 @@ import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 import uk.nhs.hee.tis.revalidation.core.dto.TraineeNoteDto;
 import uk.nhs.hee.tis.revalidation.core.entity.TraineeNote;
 import uk.nhs.hee.tis.revalidation.core.repository.TraineeNotesRepository;
@@ -63,6 +65,7 @@ class TraineeNotesServiceTest {
 
   @BeforeEach
   public void setup() {
+    ReflectionTestUtils.setField(traineeNotesService, "meterRegistry", new SimpleMeterRegistry());
     setupMockData();
   }
 
@@ -0,0 +1,119 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2020 Crown Copyright (Health Education England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.core.tcs;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.LocalDate;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An in-process stand-in for the TCS revalidation API, returning core information for every
+ * requested GMC number after a fixed delay.
+ */
+public class FakeTcsServer implements AutoCloseable {
+
+  private static final String PATH = "/tcs/api/revalidation";
+  private static final String[] GRADES = {"ST1", "ST2", "ST3", "CT1", "CT2", "F2"};
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final AtomicInteger requestCount = new AtomicInteger();
+  private final long delayMillis;
+  private final HttpServer server;
+  private final ExecutorService executor;
+
+  /**
+   * Start a server on a free local port.
+   *
+   * @param delayMillis how long to wait before responding, to simulate the TCS latency
+   * @throws IOException if the server could not be started
+   */
+  public FakeTcsServer(final long delayMillis) throws IOException {
+    this.delayMillis = delayMillis;
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    executor = Executors.newCachedThreadPool();
+    server.setExecutor(executor);
+    server.createContext(PATH, this::handle);
+    server.start();
+  }
+
+  /**
+   * Get the URL to configure as the TCS URL.
+   *
+   * @return the TCS URL
+   */
+  public String getUrl() {
+    return "http://localhost:" + server.getAddress().getPort() + PATH;
+  }
+
+  public int getRequestCount() {
+    return requestCount.get();
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  private void handle(final HttpExchange exchange) throws IOException {
+    requestCount.incrementAndGet();
+
+    try {
+      TimeUnit.MILLISECONDS.sleep(delayMillis);
+
+      final String path = exchange.getRequestURI().getPath();
+      final String gmcIds = path.substring(path.lastIndexOf('/') + 1);
+
+      final ObjectNode response = objectMapper.createObjectNode();
+      for (final String gmcId : gmcIds.split(",")) {
+        final int hash = Math.abs(gmcId.hashCode());
+        final ObjectNode traineeCore = response.putObject(gmcId);
+        traineeCore.put("gmcId", gmcId);
+        traineeCore.put("curriculumEndDate", LocalDate.now().plusDays(hash % 1000).toString());
+        traineeCore.put("programmeMembershipType", "SUBSTANTIVE");
+        traineeCore.put("programmeName", "General Practice");
+        traineeCore.put("currentGrade", GRADES[hash % GRADES.length]);
+      }
+
+      final byte[] bytes = objectMapper.writeValueAsBytes(response);
+      exchange.getResponseHeaders().set("Content-Type", "application/json");
+      exchange.sendResponseHeaders(200, bytes.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(bytes);
+      }
+    } catch (final InterruptedException exception) {
+      Thread.currentThread().interrupt();
+    } finally {
+      exchange.close();
+    }
+  }
+}